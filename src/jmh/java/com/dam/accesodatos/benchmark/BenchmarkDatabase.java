@@ -0,0 +1,103 @@
+package com.dam.accesodatos.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.dam.accesodatos.McpAccesoDatosRa3Application;
+import com.dam.accesodatos.ra3.MascotaColumnarSnapshot;
+import com.dam.accesodatos.ra3.MascotaFuzzyIndex;
+import com.dam.accesodatos.ra3.MascotaNombreIndex;
+import com.dam.accesodatos.ra3.MascotaTipoCounters;
+
+/**
+ * Arranque del contexto Spring para los benchmarks JMH.
+ *
+ * Cada tamaño de tabla usa su propia base H2 en memoria, creada por Hibernate
+ * a partir de la entidad (ddl-auto=create) y poblada con JDBC batch, sin
+ * data.sql ni logs de SQL (que falsearían las mediciones).
+ */
+public final class BenchmarkDatabase {
+
+    public static final String[] TIPOS = {"Perro", "Gato", "Conejo", "Hamster", "Loro"};
+    public static final String[] SEXOS = {"Macho", "Hembra"};
+    private static final String[] NOMBRES = {"Max", "Luna", "Copito", "Rex", "Michi", "Bella", "Pelusa", "Rocky"};
+
+    private static final int SEED_BATCH = 5_000;
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * Arranca la aplicación sin servidor web contra una H2 en memoria con
+     * {@code rows} mascotas (chips 1..rows).
+     */
+    public static ConfigurableApplicationContext start(int rows) {
+        // Argumentos de línea de comandos: tienen prioridad sobre application.yml
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(McpAccesoDatosRa3Application.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.datasource.url=jdbc:h2:mem:bench_" + rows + ";DB_CLOSE_DELAY=-1",
+                        "--spring.sql.init.mode=never",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.jpa.properties.hibernate.format_sql=false",
+                        "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                        "--spring.jpa.properties.hibernate.highlight_sql=false",
+                        "--spring.h2.console.enabled=false",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.dam.accesodatos=WARN",
+                        "--logging.level.org.hibernate.SQL=WARN",
+                        "--logging.level.org.hibernate.orm.jdbc.bind=WARN",
+                        "--logging.level.org.springframework.orm.jpa=WARN",
+                        "--logging.level.org.springframework.transaction=WARN",
+                        "--logging.level.org.springframework.jdbc.datasource.init=WARN");
+
+        seed(context.getBean(JdbcTemplate.class), rows);
+        // Las estructuras en memoria se construyen al arrancar, antes de poblar la tabla
+        context.getBean(MascotaTipoCounters.class).rebuild();
+        context.getBean(MascotaNombreIndex.class).rebuild();
+        context.getBean(MascotaFuzzyIndex.class).rebuild();
+        context.getBean(MascotaColumnarSnapshot.class).rebuild();
+        return context;
+    }
+
+    /**
+     * Inserta las filas en lotes JDBC. Los datos son deterministas para que
+     * las ejecuciones sean comparables entre versiones.
+     */
+    public static void seed(JdbcTemplate jdbcTemplate, int rows) {
+        String sql = "INSERT INTO mascotas (num_chip, nombre, tipo_mascota, edad, sexo, otros_detalles, version) "
+                + "VALUES (?, ?, ?, ?, ?, ?, 0)";
+        List<Object[]> batch = new ArrayList<>(SEED_BATCH);
+        for (int chip = 1; chip <= rows; chip++) {
+            batch.add(row(chip));
+            if (batch.size() == SEED_BATCH) {
+                jdbcTemplate.batchUpdate(sql, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, batch);
+        }
+    }
+
+    public static Object[] row(int chip) {
+        return new Object[] {
+                chip,
+                nombre(chip),
+                TIPOS[chip % TIPOS.length],
+                chip % 20,
+                SEXOS[chip % SEXOS.length],
+                chip % 3 == 0 ? null : "Mascota de benchmark " + chip
+        };
+    }
+
+    public static String nombre(int chip) {
+        return NOMBRES[chip % NOMBRES.length] + chip;
+    }
+}
@@ -0,0 +1,67 @@
+package com.dam.accesodatos.benchmark;
+
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.dam.accesodatos.model.Mascota;
+import com.dam.accesodatos.model.MascotaQueryDto;
+import com.dam.accesodatos.model.MascotaStats;
+import com.dam.accesodatos.ra3.HibernateMascotaService;
+
+/**
+ * Estadísticas de edad de las hembras agrupadas por tipo: findAll() + filtro
+ * y agrupación con streams (como se hacía en los informes) frente a
+ * analyzeMascotas sobre el snapshot columnar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ColumnarScanBenchmark {
+
+    @Param({"100000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private HibernateMascotaService service;
+    private MascotaQueryDto hembras;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkDatabase.start(rows);
+        service = context.getBean(HibernateMascotaService.class);
+        hembras = new MascotaQueryDto(null, null, "Hembra", null, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Map<String, IntSummaryStatistics> findAllAndStreams() {
+        List<Mascota> mascotas = service.findAll();
+        return mascotas.stream()
+                .filter(m -> "Hembra".equals(m.getSexo()))
+                .collect(Collectors.groupingBy(Mascota::getTipoMascota, Collectors.summarizingInt(Mascota::getEdad)));
+    }
+
+    @Benchmark
+    public List<MascotaStats> columnarSnapshot() {
+        return service.analyzeMascotas(hembras, "tipoMascota");
+    }
+}
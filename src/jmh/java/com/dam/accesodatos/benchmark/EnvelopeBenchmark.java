@@ -0,0 +1,88 @@
+package com.dam.accesodatos.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.dam.accesodatos.mcp.McpEnvelope;
+import com.dam.accesodatos.model.Mascota;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Creación + serialización de la respuesta de find_mascota_by_id: HashMap
+ * (implementación anterior) frente a McpEnvelope con su serializador propio.
+ *
+ * Sin base de datos ni Spring: solo cuenta el envoltorio. La salida se
+ * descarta en un OutputStream que solo cuenta bytes, como si fuera el socket
+ * de Tomcat. El perfilador gc (build.gradle) da los bytes asignados por
+ * operación.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EnvelopeBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Mascota mascota;
+    private CountingSink sink;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        mascota = new Mascota(1001, "Max", "Perro", 5, "Macho", "Vacunado, castrado");
+        sink = new CountingSink();
+    }
+
+    @Benchmark
+    public void hashMapEnvelope() throws IOException {
+        Map<String, Object> response = new HashMap<>();
+        response.put("tool", "find_mascota_by_id");
+        response.put("result", mascota);
+        response.put("status", "success");
+        objectMapper.writeValue(sink, response);
+    }
+
+    @Benchmark
+    public void typedEnvelope() throws IOException {
+        objectMapper.writeValue(sink, McpEnvelope.success("find_mascota_by_id", mascota));
+    }
+
+    @Benchmark
+    public void hashMapError() throws IOException {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", "Error buscando mascota: no existe");
+        error.put("tool", "find_mascota_by_id");
+        error.put("status", "error");
+        objectMapper.writeValue(sink, error);
+    }
+
+    @Benchmark
+    public void typedError() throws IOException {
+        objectMapper.writeValue(sink, McpEnvelope.error("find_mascota_by_id", "Error buscando mascota: no existe"));
+    }
+
+    /** Descarta la salida contando bytes (el contador impide que el JIT elimine la escritura). */
+    static final class CountingSink extends OutputStream {
+        long written;
+
+        @Override
+        public void write(int b) {
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            written += len;
+        }
+    }
+}
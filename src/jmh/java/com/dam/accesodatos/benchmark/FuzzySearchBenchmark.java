@@ -0,0 +1,65 @@
+package com.dam.accesodatos.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.dam.accesodatos.model.MascotaView;
+import com.dam.accesodatos.ra3.HibernateMascotaService;
+import com.dam.accesodatos.ra3.MascotaFuzzyIndex;
+
+/**
+ * fuzzy_search_mascotas con un nombre mal escrito (le falta una letra) a
+ * distintos tamaños de tabla.
+ *
+ * indexOnly mide solo el BK-tree + clave fonética; service incluye además la
+ * carga por clave primaria de las 10 mascotas más cercanas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FuzzySearchBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private HibernateMascotaService service;
+    private MascotaFuzzyIndex fuzzyIndex;
+    private String misspelled;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkDatabase.start(rows);
+        service = context.getBean(HibernateMascotaService.class);
+        fuzzyIndex = context.getBean(MascotaFuzzyIndex.class);
+        // "Rocky49999" -> "Roky49999": a distancia 1 del original
+        misspelled = BenchmarkDatabase.nombre(rows / 2 - 1).replaceFirst("c", "");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Integer> indexOnly() {
+        return fuzzyIndex.search(misspelled, 10);
+    }
+
+    @Benchmark
+    public List<MascotaView> service() {
+        return service.fuzzySearchMascotas(misspelled, 10);
+    }
+}
@@ -0,0 +1,156 @@
+package com.dam.accesodatos.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.dam.accesodatos.model.Mascota;
+import com.dam.accesodatos.model.MascotaCreateDto;
+import com.dam.accesodatos.model.MascotaQueryDto;
+import com.dam.accesodatos.model.MascotaUpdateDto;
+import com.dam.accesodatos.ra3.HibernateMascotaService;
+
+/**
+ * Benchmarks JMH de HibernateMascotaService sobre H2 con 10k, 100k y 1M filas.
+ *
+ * Cada método del servicio se mide a través del bean de Spring (proxy
+ * transaccional incluido), igual que lo invoca McpServerController.
+ * Las filas que añaden los benchmarks de escritura (chips > rows) se borran
+ * al final de cada iteración para que la tabla no crezca entre mediciones.
+ *
+ * Ejecutar: ./gradlew jmh (resultados JSON en build/reports/jmh/results.json)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HibernateMascotaServiceBenchmark {
+
+    private static final int TRANSFER_SIZE = 100;
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private HibernateMascotaService service;
+    private JdbcTemplate jdbcTemplate;
+    private AtomicInteger nextChip;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkDatabase.start(rows);
+        service = context.getBean(HibernateMascotaService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        nextChip = new AtomicInteger(rows + 1);
+    }
+
+    @TearDown(Level.Iteration)
+    public void removeInsertedRows() {
+        jdbcTemplate.update("DELETE FROM mascotas WHERE num_chip > ?", rows);
+        nextChip.set(rows + 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Fila creada antes de cada invocación de deleteMascota() para que el
+     * benchmark siempre borre una mascota existente.
+     */
+    @State(Scope.Thread)
+    public static class FilaABorrar {
+        int chip;
+
+        @Setup(Level.Invocation)
+        public void insert(HibernateMascotaServiceBenchmark benchmark) {
+            chip = benchmark.nextChip.getAndIncrement();
+            benchmark.jdbcTemplate.update(
+                    "INSERT INTO mascotas (num_chip, nombre, tipo_mascota, edad, sexo, otros_detalles, version) "
+                            + "VALUES (?, ?, ?, ?, ?, ?, 0)",
+                    BenchmarkDatabase.row(chip));
+        }
+    }
+
+    @Benchmark
+    public Mascota createMascota() {
+        int chip = nextChip.getAndIncrement();
+        Object[] row = BenchmarkDatabase.row(chip);
+        MascotaCreateDto dto = new MascotaCreateDto(chip, (String) row[1], (String) row[2],
+                (Integer) row[3], (String) row[4], (String) row[5]);
+        return service.createMascota(dto);
+    }
+
+    @Benchmark
+    public Mascota findMascotaByNumChip() {
+        return service.findMascotaByNumChip(randomChip());
+    }
+
+    @Benchmark
+    public Mascota updateMascota() {
+        MascotaUpdateDto dto = new MascotaUpdateDto();
+        dto.setEdad(ThreadLocalRandom.current().nextInt(20));
+        return service.updateMascota(randomChip(), dto);
+    }
+
+    @Benchmark
+    public boolean deleteMascota(FilaABorrar fila) {
+        return service.deleteMascota(fila.chip);
+    }
+
+    @Benchmark
+    public List<Mascota> searchMascotas() {
+        MascotaQueryDto query = new MascotaQueryDto(null, randomTipo(), "Hembra", null, null);
+        return service.searchMascotas(query);
+    }
+
+    @Benchmark
+    public boolean transferData() {
+        List<Mascota> mascotas = new ArrayList<>(TRANSFER_SIZE);
+        for (int i = 0; i < TRANSFER_SIZE; i++) {
+            int chip = nextChip.getAndIncrement();
+            Object[] row = BenchmarkDatabase.row(chip);
+            mascotas.add(new Mascota(chip, (String) row[1], (String) row[2],
+                    (Integer) row[3], (String) row[4], (String) row[5]));
+        }
+        return service.transferData(mascotas);
+    }
+
+    @Benchmark
+    public long executeCountByTipo() {
+        return service.executeCountByTipo(randomTipo());
+    }
+
+    @Benchmark
+    public List<Mascota> findMascotasByTipo() {
+        return service.findMascotasByTipo(randomTipo());
+    }
+
+    @Benchmark
+    public List<Mascota> findAll() {
+        return service.findAll();
+    }
+
+    private int randomChip() {
+        return ThreadLocalRandom.current().nextInt(1, rows + 1);
+    }
+
+    private static String randomTipo() {
+        return BenchmarkDatabase.TIPOS[ThreadLocalRandom.current().nextInt(BenchmarkDatabase.TIPOS.length)];
+    }
+}
@@ -0,0 +1,78 @@
+package com.dam.accesodatos.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.dam.accesodatos.model.Mascota;
+import com.dam.accesodatos.model.MascotaView;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Listado de "page" mascotas como entidades gestionadas frente a la
+ * proyección MascotaView (expresión constructora JPQL).
+ *
+ * Con el perfilador gc (activado en build.gradle) el resultado incluye
+ * gc.alloc.rate.norm: bytes asignados por operación. Dividido entre page da
+ * la asignación por fila; la diferencia son las entradas del contexto de
+ * persistencia y los snapshots del dirty checking que la proyección no crea.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ListProjectionBenchmark {
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"500", "10000"})
+    public int page;
+
+    private ConfigurableApplicationContext context;
+    private EntityManager entityManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkDatabase.start(rows);
+        entityManager = context.getBean(EntityManagerFactory.class).createEntityManager();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManager.close();
+        context.close();
+    }
+
+    @Benchmark
+    public List<Mascota> managedEntities() {
+        List<Mascota> result = entityManager
+                .createQuery("SELECT m FROM Mascota m ORDER BY m.numChip", Mascota.class)
+                .setMaxResults(page)
+                .getResultList();
+        entityManager.clear();
+        return result;
+    }
+
+    @Benchmark
+    public List<MascotaView> viewProjection() {
+        List<MascotaView> result = entityManager
+                .createQuery(MascotaView.JPQL_SELECT + " FROM Mascota m ORDER BY m.numChip", MascotaView.class)
+                .setMaxResults(page)
+                .getResultList();
+        entityManager.clear();
+        return result;
+    }
+}
@@ -0,0 +1,67 @@
+package com.dam.accesodatos.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.dam.accesodatos.model.Mascota;
+import com.dam.accesodatos.model.MascotaView;
+import com.dam.accesodatos.ra3.HibernateMascotaService;
+import com.dam.accesodatos.repository.MascotaRepository;
+
+/**
+ * Búsqueda por subcadena del nombre: LOWER(nombre) LIKE '%x%' de
+ * MascotaRepository frente a searchMascotasByNombre (índice de trigramas +
+ * carga por clave primaria).
+ *
+ * Con varios tamaños de tabla: el LIKE crece con el número de filas, el
+ * índice depende solo de cuántas mascotas comparten los trigramas buscados.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NombreSearchBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private HibernateMascotaService service;
+    private MascotaRepository repository;
+    private String fragment;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkDatabase.start(rows);
+        service = context.getBean(HibernateMascotaService.class);
+        repository = context.getBean(MascotaRepository.class);
+        // Subcadena en mitad del nombre, en mayúsculas: coincide con unas pocas filas
+        fragment = BenchmarkDatabase.nombre(rows / 2).substring(1).toUpperCase();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Mascota> likeScan() {
+        return repository.findByNombreContainingIgnoreCase(fragment);
+    }
+
+    @Benchmark
+    public List<MascotaView> trigramIndex() {
+        return service.searchMascotasByNombre(fragment, 10);
+    }
+}
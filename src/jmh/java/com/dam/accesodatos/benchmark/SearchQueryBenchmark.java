@@ -0,0 +1,123 @@
+package com.dam.accesodatos.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.dam.accesodatos.model.Mascota;
+import com.dam.accesodatos.model.MascotaQueryDto;
+import com.dam.accesodatos.ra3.MascotaSearchQueries;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.TypedQuery;
+
+/**
+ * Coste por llamada de searchMascotas: JPQL construido con StringBuilder y
+ * createQuery() (implementación anterior) frente a las consultas
+ * precompiladas de MascotaSearchQueries con createNamedQuery().
+ *
+ * Los benchmarks *Prepare miden solo la obtención de la consulta (análisis o
+ * búsqueda en la caché de planes frente a copia de la named query); los
+ * *Execute incluyen además la ejecución de una página de 10 filas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchQueryBenchmark {
+
+    @Param({"10000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private EntityManager entityManager;
+    private MascotaQueryDto queryDto;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkDatabase.start(rows);
+        entityManager = context.getBean(EntityManagerFactory.class).createEntityManager();
+        queryDto = new MascotaQueryDto(null, "Gato", "Hembra", 10, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManager.close();
+        context.close();
+    }
+
+    @Benchmark
+    public TypedQuery<Mascota> dynamicJpqlPrepare() {
+        return dynamicQuery();
+    }
+
+    @Benchmark
+    public TypedQuery<Mascota> namedQueryPrepare() {
+        return namedQuery();
+    }
+
+    @Benchmark
+    public List<Mascota> dynamicJpqlExecute() {
+        return execute(dynamicQuery());
+    }
+
+    @Benchmark
+    public List<Mascota> namedQueryExecute() {
+        return execute(namedQuery());
+    }
+
+    private List<Mascota> execute(TypedQuery<Mascota> query) {
+        query.setMaxResults(11);
+        List<Mascota> result = query.getResultList();
+        entityManager.clear();
+        return result;
+    }
+
+    /** Implementación anterior: JPQL montado en cada llamada. */
+    private TypedQuery<Mascota> dynamicQuery() {
+        StringBuilder jpql = new StringBuilder("SELECT m FROM Mascota m WHERE 1=1");
+        if (queryDto.getNombre() != null) {
+            jpql.append(" AND m.nombre = :nombre");
+        }
+        if (queryDto.getTipoMascota() != null) {
+            jpql.append(" AND m.tipoMascota = :tipo");
+        }
+        if (queryDto.getSexo() != null) {
+            jpql.append(" AND m.sexo = :sexo");
+        }
+        jpql.append(" ORDER BY m.numChip");
+        TypedQuery<Mascota> query = entityManager.createQuery(jpql.toString(), Mascota.class);
+        bind(query);
+        return query;
+    }
+
+    private TypedQuery<Mascota> namedQuery() {
+        TypedQuery<Mascota> query = entityManager.createNamedQuery(
+                MascotaSearchQueries.queryName(queryDto), Mascota.class);
+        bind(query);
+        return query;
+    }
+
+    private void bind(TypedQuery<Mascota> query) {
+        if (queryDto.getNombre() != null) {
+            query.setParameter("nombre", queryDto.getNombre());
+        }
+        if (queryDto.getTipoMascota() != null) {
+            query.setParameter("tipo", queryDto.getTipoMascota());
+        }
+        if (queryDto.getSexo() != null) {
+            query.setParameter("sexo", queryDto.getSexo());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.dam.accesodatos.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+
+import com.dam.accesodatos.mcp.McpEnvelope;
+import com.dam.accesodatos.mcp.McpServerController;
+import com.dam.accesodatos.model.MascotaQueryDto;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Endpoints escritos a mano de McpServerController frente al endpoint
+ * genérico /mcp/invoke/{tool} (MethodHandle + ObjectReader cacheados).
+ *
+ * Se llama a los métodos del controlador directamente, sin HTTP, partiendo en
+ * ambos casos de los bytes JSON del cuerpo: se mide deserialización de
+ * argumentos + despacho + llamada al servicio.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ToolDispatchBenchmark {
+
+    private static final TypeReference<Map<String, Object>> MAP = new TypeReference<>() {};
+
+    @Param({"10000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private McpServerController controller;
+    private ObjectMapper objectMapper;
+
+    private byte[] findByIdHandWritten;
+    private byte[] findByIdGeneric;
+    private byte[] searchBody;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkDatabase.start(rows);
+        controller = context.getBean(McpServerController.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+
+        int chip = rows / 2;
+        findByIdHandWritten = ("{\"mascotaId\": " + chip + "}").getBytes(StandardCharsets.UTF_8);
+        findByIdGeneric = ("{\"id\": " + chip + "}").getBytes(StandardCharsets.UTF_8);
+        searchBody = "{\"tipoMascota\": \"Gato\", \"sexo\": \"Hembra\", \"limit\": 10}".getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ResponseEntity<McpEnvelope> findByIdHandWritten() throws IOException {
+        return controller.findMascotaById(objectMapper.readValue(findByIdHandWritten, MAP), null);
+    }
+
+    @Benchmark
+    public ResponseEntity<McpEnvelope> findByIdGeneric() throws IOException {
+        return controller.invokeTool("find_mascota_by_id", objectMapper.readTree(findByIdGeneric));
+    }
+
+    @Benchmark
+    public ResponseEntity<McpEnvelope> searchHandWritten() throws IOException {
+        return controller.searchMascotas(objectMapper.readValue(searchBody, MascotaQueryDto.class), null);
+    }
+
+    @Benchmark
+    public ResponseEntity<McpEnvelope> searchGeneric() throws IOException {
+        return controller.invokeTool("search_mascotas", objectMapper.readTree(searchBody));
+    }
+}
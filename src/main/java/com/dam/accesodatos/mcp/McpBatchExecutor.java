@@ -0,0 +1,167 @@
+package com.dam.accesodatos.mcp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ejecuta las llamadas de POST /mcp/batch en paralelo sobre hilos virtuales.
+ *
+ * Cada llamada corre en su propio hilo virtual (y en su propia transacción).
+ * Cuántas usan la BD a la vez lo limita el DbBulkhead que envuelve a
+ * HibernateMascotaService, igual que para las peticiones HTTP normales: los
+ * hilos virtuales que esperan permiso no ocupan un hilo del sistema.
+ * Además el executor tiene su propio límite (pawner.batch.parallelism, por
+ * defecto el tamaño del pool): con pawner.bulkhead.enabled=false no hay
+ * DbBulkhead y, sin él, un batch de max-calls llamadas pediría max-calls
+ * conexiones a Hikari a la vez.
+ *
+ * Todo el batch tiene un plazo (pawner.batch.timeout-ms) para no dejar la
+ * petición HTTP esperando sin límite. Al vencer:
+ * - Las llamadas que aún esperaban turno ya no se ejecutan (error "no
+ *   ejecutada": se pueden repetir sin riesgo).
+ * - Las que estaban en marcha NO se interrumpen: interrumpir un hilo a mitad
+ *   de una operación JDBC sobre H2 en fichero puede cerrar su FileChannel y
+ *   dejar la BD inutilizable para todos. Terminan (commit o rollback) por su
+ *   cuenta y se devuelven con status "unknown": una escritura puede llegar a
+ *   confirmarse después de la respuesta.
+ *
+ * Los resultados se devuelven en el mismo orden que las llamadas, cada uno
+ * con su propio status: un error en una llamada no afecta a las demás.
+ */
+@Component
+public class McpBatchExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(McpBatchExecutor.class);
+
+    @Autowired
+    private McpToolRegistry toolRegistry;
+
+    // Llamadas como máximo en una petición /mcp/batch
+    @Value("${pawner.batch.max-calls:100}")
+    private int maxCalls = 100;
+
+    // Llamadas de batch ejecutándose a la vez (entre todas las peticiones)
+    @Value("${pawner.batch.parallelism:${spring.datasource.hikari.maximum-pool-size:10}}")
+    private int parallelism = 10;
+
+    // Plazo máximo de una petición /mcp/batch completa
+    @Value("${pawner.batch.timeout-ms:60000}")
+    private long timeoutMillis = 60000;
+
+    private ExecutorService executor;
+
+    private Semaphore running;
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        running = new Semaphore(parallelism, true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.close();
+    }
+
+    public int getMaxCalls() {
+        return maxCalls;
+    }
+
+    public List<McpEnvelope> execute(List<McpCall> calls) {
+        if (calls.size() > maxCalls) {
+            throw new IllegalArgumentException("Demasiadas llamadas en el batch: " + calls.size()
+                    + " (máximo " + maxCalls + ")");
+        }
+
+        List<Future<McpEnvelope>> futures = new ArrayList<>(calls.size());
+        List<AtomicBoolean> claims = new ArrayList<>(calls.size());
+        for (McpCall call : calls) {
+            AtomicBoolean claimed = new AtomicBoolean();
+            claims.add(claimed);
+            futures.add(executor.submit(() -> runBounded(call, claimed)));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        List<McpEnvelope> results = new ArrayList<>(calls.size());
+        for (int i = 0; i < futures.size(); i++) {
+            results.add(await(futures.get(i), calls.get(i), claims.get(i), deadline));
+        }
+        return results;
+    }
+
+    /**
+     * Espera turno en el semáforo (el hilo virtual queda aparcado) y ejecuta,
+     * salvo que await() ya haya dado la llamada por no ejecutada.
+     *
+     * claimed decide quién se queda la llamada: este hilo al empezar a
+     * ejecutarla o await() al vencer el plazo, nunca los dos.
+     */
+    private McpEnvelope runBounded(McpCall call, AtomicBoolean claimed) throws InterruptedException {
+        running.acquire();
+        try {
+            if (!claimed.compareAndSet(false, true)) {
+                return null;
+            }
+            return run(call);
+        } finally {
+            running.release();
+        }
+    }
+
+    private McpEnvelope run(McpCall call) {
+        McpToolRegistry.McpToolInfo tool = toolRegistry.findTool(call.tool());
+        if (tool == null) {
+            return McpEnvelope.error(call.tool(), "Herramienta no encontrada: " + call.tool());
+        }
+
+        try {
+            return McpEnvelope.of(call.tool(), toolRegistry.invoke(tool, call.arguments()));
+        } catch (Exception e) {
+            logger.error("Error ejecutando {} en batch", call.tool(), e);
+            return McpEnvelope.error(call.tool(), "Error ejecutando " + call.tool() + ": " + e.getMessage());
+        }
+    }
+
+    private McpEnvelope await(Future<McpEnvelope> future, McpCall call, AtomicBoolean claimed, long deadline) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return expired(call, claimed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return expired(call, claimed);
+        } catch (ExecutionException e) {
+            return McpEnvelope.error(call.tool(), "Error ejecutando " + call.tool() + ": " + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * La llamada no ha terminado a tiempo. Sin interrumpir su hilo: si aún no
+     * había empezado se anula; si estaba en marcha se deja terminar.
+     */
+    private McpEnvelope expired(McpCall call, AtomicBoolean claimed) {
+        if (claimed.compareAndSet(false, true)) {
+            return McpEnvelope.error(call.tool(), "No ejecutada: el batch no terminó en " + timeoutMillis
+                    + " ms y la llamada seguía esperando turno");
+        }
+        logger.warn("{} sigue en curso al vencer el plazo del batch ({} ms); se deja terminar", call.tool(), timeoutMillis);
+        return McpEnvelope.unknown(call.tool(), "Resultado desconocido: la llamada seguía en curso al vencer el plazo de "
+                + timeoutMillis + " ms y puede llegar a confirmarse");
+    }
+}
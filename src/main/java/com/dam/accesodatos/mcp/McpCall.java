@@ -0,0 +1,10 @@
+package com.dam.accesodatos.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Una invocación dentro de POST /mcp/batch: nombre de la herramienta y sus
+ * argumentos (mismo formato que el cuerpo de /mcp/invoke/{tool}).
+ */
+public record McpCall(String tool, JsonNode arguments) {
+}
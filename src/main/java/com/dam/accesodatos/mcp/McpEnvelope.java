@@ -0,0 +1,109 @@
+package com.dam.accesodatos.mcp;
+
+import com.dam.accesodatos.model.MascotaPage;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Respuesta de una herramienta MCP: {"tool", "result", "status"} en caso de
+ * éxito, {"tool", "error", "status"} en caso de error, y además "count",
+ * "nextCursor" y "hasMore" en las páginas. En /batch, una llamada que seguía
+ * en curso al vencer el plazo lleva status "unknown": no se sabe si llegará
+ * a confirmarse.
+ *
+ * Sustituye a los HashMap que se creaban en cada endpoint (tabla hash, nodos
+ * y entradas por petición, serializados con el serializador genérico de
+ * mapas). Aquí es un único objeto y el serializador escribe los campos
+ * directamente en el JsonGenerator, con los nombres de campo y los valores
+ * "success"/"error" ya codificados en SerializedString.
+ */
+@JsonSerialize(using = McpEnvelope.Serializer.class)
+public record McpEnvelope(String tool, Object result, String error, MascotaPage<?> page, boolean unknown) {
+
+    public static McpEnvelope success(String tool, Object result) {
+        return new McpEnvelope(tool, result, null, null, false);
+    }
+
+    public static McpEnvelope page(String tool, MascotaPage<?> page) {
+        return new McpEnvelope(tool, page.getResult(), null, page, false);
+    }
+
+    /**
+     * Respuesta del resultado de una herramienta invocada por nombre
+     * (/invoke, /batch): si es una página lleva el mismo formato que los
+     * endpoints dedicados (result, count, nextCursor y hasMore arriba).
+     */
+    public static McpEnvelope of(String tool, Object result) {
+        return result instanceof MascotaPage<?> page ? page(tool, page) : success(tool, result);
+    }
+
+    public static McpEnvelope error(String tool, String error) {
+        return new McpEnvelope(tool, null, error, null, false);
+    }
+
+    /**
+     * Resultado desconocido: la llamada no ha terminado y puede acabar
+     * confirmándose (o no) después de responder.
+     */
+    public static McpEnvelope unknown(String tool, String message) {
+        return new McpEnvelope(tool, null, message, null, true);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    public static final class Serializer extends StdSerializer<McpEnvelope> {
+
+        private static final SerializedString TOOL = new SerializedString("tool");
+        private static final SerializedString RESULT = new SerializedString("result");
+        private static final SerializedString ERROR = new SerializedString("error");
+        private static final SerializedString STATUS = new SerializedString("status");
+        private static final SerializedString COUNT = new SerializedString("count");
+        private static final SerializedString NEXT_CURSOR = new SerializedString("nextCursor");
+        private static final SerializedString HAS_MORE = new SerializedString("hasMore");
+        private static final SerializedString SUCCESS = new SerializedString("success");
+        private static final SerializedString FAILURE = new SerializedString("error");
+        private static final SerializedString UNKNOWN = new SerializedString("unknown");
+
+        public Serializer() {
+            super(McpEnvelope.class);
+        }
+
+        @Override
+        public void serialize(McpEnvelope envelope, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            generator.writeStartObject();
+            if (envelope.tool() != null) {
+                generator.writeFieldName(TOOL);
+                generator.writeString(envelope.tool());
+            }
+            if (envelope.isSuccess()) {
+                generator.writeFieldName(RESULT);
+                provider.defaultSerializeValue(envelope.result(), generator);
+                MascotaPage<?> page = envelope.page();
+                if (page != null) {
+                    generator.writeFieldName(COUNT);
+                    generator.writeNumber(page.getCount());
+                    generator.writeFieldName(NEXT_CURSOR);
+                    generator.writeString(page.getNextCursor());
+                    generator.writeFieldName(HAS_MORE);
+                    generator.writeBoolean(page.isHasMore());
+                }
+                generator.writeFieldName(STATUS);
+                generator.writeString(SUCCESS);
+            } else {
+                generator.writeFieldName(ERROR);
+                generator.writeString(envelope.error());
+                generator.writeFieldName(STATUS);
+                generator.writeString(envelope.unknown() ? UNKNOWN : FAILURE);
+            }
+            generator.writeEndObject();
+        }
+    }
+}
@@ -3,12 +3,40 @@ package com.dam.accesodatos.mcp;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.dam.accesodatos.ra3.DbBulkhead;
 import com.dam.accesodatos.ra3.HibernateMascotaService;
+import com.dam.accesodatos.ra3.MascotaExporter;
+import com.dam.accesodatos.ra3.MascotaImporter;
+import com.dam.accesodatos.ra3.MascotaDataVersion;
+import com.dam.accesodatos.ra3.OptimisticRetry;
+import com.dam.accesodatos.ra3.PersistenceMode;
+import com.dam.accesodatos.ra3.SecondLevelCacheMetrics;
+import com.dam.accesodatos.model.ExportResult;
+import com.dam.accesodatos.model.ImportResult;
 import com.dam.accesodatos.model.Mascota;
 import com.dam.accesodatos.model.MascotaCreateDto;
-
+import com.dam.accesodatos.model.MascotaLookup;
+import com.dam.accesodatos.model.MascotaPage;
+import com.dam.accesodatos.model.MascotaPatch;
+import com.dam.accesodatos.model.MascotaQueryDto;
+import com.dam.accesodatos.model.MascotaStats;
+import com.dam.accesodatos.model.MascotaView;
+import com.dam.accesodatos.model.TransferResult;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +55,35 @@ public class McpServerController {
     @Autowired
     private McpToolRegistry toolRegistry;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SecondLevelCacheMetrics cacheMetrics;
+
+    @Autowired
+    private McpBatchExecutor batchExecutor;
+
+    @Autowired
+    private DbBulkhead dbBulkhead;
+
+    @Autowired
+    private MascotaDataVersion dataVersion;
+
+    @Autowired
+    private OptimisticRetry optimisticRetry;
+
+    @Autowired
+    private MascotaImporter mascotaImporter;
+
+    @Autowired
+    private MascotaExporter mascotaExporter;
+
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    // Cada cuántas líneas se vacía el buffer hacia el cliente (la primera se envía siempre en cuanto está lista)
+    private static final int NDJSON_FLUSH_EVERY = 256;
+
     @GetMapping("/health")
     public ResponseEntity<Map<String, String>> getHealth() {
         Map<String, String> health = new HashMap<>();
@@ -36,17 +93,29 @@ public class McpServerController {
         return ResponseEntity.ok(health);
     }
 
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("cache", cacheMetrics.snapshot());
+        metrics.put("bulkhead", dbBulkhead.snapshot());
+        metrics.put("retry", optimisticRetry.snapshot());
+        metrics.put("import", mascotaImporter.snapshot());
+
+        return ResponseEntity.ok(metrics);
+    }
+
     @GetMapping("/tools")
     public ResponseEntity<Map<String, Object>> getTools() {
         logger.debug("Solicitadas herramientas MCP Hibernate/JPA disponibles");
 
         List<McpToolRegistry.McpToolInfo> tools = toolRegistry.getRegisteredTools();
 
-        List<Map<String, String>> toolsList = tools.stream()
+        List<Map<String, Object>> toolsList = tools.stream()
                 .map(tool -> {
-                    Map<String, String> toolMap = new HashMap<>();
+                    Map<String, Object> toolMap = new HashMap<>();
                     toolMap.put("name", tool.getName());
                     toolMap.put("description", tool.getDescription());
+                    toolMap.put("parameters", tool.getParameterNames());
                     return toolMap;
                 })
                 .collect(Collectors.toList());
@@ -60,132 +129,554 @@ public class McpServerController {
         return ResponseEntity.ok(response);
     }
 
-    @PostMapping("/test_entity_manager")
-    public ResponseEntity<Map<String, Object>> testEntityManager() {
-        logger.debug("Probando EntityManager");
+    /**
+     * Endpoint genérico: ejecuta cualquier herramienta registrada por su nombre.
+     *
+     * El cuerpo son los argumentos por nombre de parámetro, p. ej.
+     * POST /mcp/invoke/find_mascotas_by_tipo {"tipo": "Perro", "limit": 20}.
+     * McpToolRegistry resuelve al arrancar un MethodHandle y un lector JSON por
+     * herramienta, así que añadir una herramienta al servicio no requiere
+     * escribir otro endpoint aquí.
+     */
+    @PostMapping("/invoke/{tool}")
+    public ResponseEntity<McpEnvelope> invokeTool(@PathVariable("tool") String toolName,
+                                                  @RequestBody(required = false) JsonNode arguments) {
+        McpToolRegistry.McpToolInfo tool = toolRegistry.findTool(toolName);
+        if (tool == null) {
+            return ResponseEntity.status(404)
+                    .body(McpEnvelope.error(toolName, "Herramienta no encontrada: " + toolName));
+        }
 
         try {
-            String result = hibernateMascotaService.testEntityManager();
+            Object result = toolRegistry.invoke(tool, arguments);
+
+            return ResponseEntity.ok(McpEnvelope.of(toolName, result));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(McpEnvelope.error(toolName, e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error ejecutando {}", toolName, e);
+
+            return ResponseEntity.status(500)
+                    .body(McpEnvelope.error(toolName, "Error ejecutando " + toolName + ": " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Varias herramientas en una sola petición HTTP.
+     *
+     * Body: [{"tool": "find_mascota_by_id", "arguments": {"id": 1001}},
+     *        {"tool": "execute_count_by_tipo", "arguments": {"tipo": "Perro"}}]
+     *
+     * Las llamadas se ejecutan en paralelo sobre hilos virtuales (ver
+     * McpBatchExecutor) y "results" mantiene el orden de la petición, cada
+     * una con su status.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> batch(@RequestBody List<McpCall> calls) {
+        logger.debug("Batch MCP con {} llamadas", calls.size());
+
+        try {
+            List<McpEnvelope> results = batchExecutor.execute(calls);
 
             Map<String, Object> response = new HashMap<>();
-            response.put("tool", "test_entity_manager");
-            response.put("result", result);
+            response.put("results", results);
+            response.put("count", results.size());
             response.put("status", "success");
 
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            logger.error("Error probando EntityManager", e);
-
+        } catch (IllegalArgumentException e) {
             Map<String, Object> error = new HashMap<>();
-            error.put("error", "Error probando EntityManager: " + e.getMessage());
-            error.put("tool", "test_entity_manager");
+            error.put("error", e.getMessage());
             error.put("status", "error");
 
-            return ResponseEntity.status(500).body(error);
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @PostMapping("/test_entity_manager")
+    public ResponseEntity<McpEnvelope> testEntityManager() {
+        logger.debug("Probando EntityManager");
+
+        try {
+            String result = hibernateMascotaService.testEntityManager();
+
+            return ResponseEntity.ok(McpEnvelope.success("test_entity_manager", result));
+        } catch (Exception e) {
+            logger.error("Error probando EntityManager", e);
+
+            return ResponseEntity.status(500)
+                    .body(McpEnvelope.error("test_entity_manager", "Error probando EntityManager: " + e.getMessage()));
         }
     }
 
     @PostMapping("/create_mascota")
-    public ResponseEntity<Map<String, Object>> createMascota(@RequestBody MascotaCreateDto dto) {
+    public ResponseEntity<McpEnvelope> createMascota(@RequestBody MascotaCreateDto dto) {
         logger.debug("Creando mascota con Hibernate");
 
         try {
             Mascota mascota = hibernateMascotaService.createMascota(dto);
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("tool", "create_mascota");
-            response.put("result", mascota);
-            response.put("status", "success");
-
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(McpEnvelope.success("create_mascota", mascota));
         } catch (Exception e) {
             logger.error("Error creando mascota", e);
 
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "Error creando mascota: " + e.getMessage());
-            error.put("tool", "create_mascota");
-            error.put("status", "error");
-
-            return ResponseEntity.status(500).body(error);
+            return ResponseEntity.status(500)
+                    .body(McpEnvelope.error("create_mascota", "Error creando mascota: " + e.getMessage()));
         }
     }
 
     @PostMapping("/find_mascota_by_id")
-    public ResponseEntity<Map<String, Object>> findMascotaById(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<McpEnvelope> findMascotaById(@RequestBody Map<String, Object> request,
+                                                       @RequestParam(required = false) String mode) {
         logger.debug("Buscando mascota por ID");
 
         try {
-            Integer mascotaId = ((Number) request.get("mascotaId")).intValue();
-            Mascota mascota = hibernateMascotaService.findMascotaByNumChip(mascotaId);
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("tool", "find_mascota_by_id");
-            response.put("result", mascota);
-            response.put("status", "success");
-
-            return ResponseEntity.ok(response);
+            Integer mascotaId = intOf(request, "mascotaId");
+            if (mascotaId == null) {
+                throw new IllegalArgumentException("'mascotaId' es obligatorio");
+            }
+            Mascota mascota = hibernateMascotaService.findMascotaByNumChip(mascotaId, PersistenceMode.parse(mode));
+
+            return ResponseEntity.ok(McpEnvelope.success("find_mascota_by_id", mascota));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(McpEnvelope.error("find_mascota_by_id", e.getMessage()));
         } catch (Exception e) {
             logger.error("Error buscando mascota", e);
 
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "Error buscando mascota: " + e.getMessage());
-            error.put("tool", "find_mascota_by_id");
-            error.put("status", "error");
+            return ResponseEntity.status(500)
+                    .body(McpEnvelope.error("find_mascota_by_id", "Error buscando mascota: " + e.getMessage()));
+        }
+    }
 
-            return ResponseEntity.status(500).body(error);
+    @PostMapping("/find_mascotas_by_ids")
+    public ResponseEntity<McpEnvelope> findMascotasByIds(@RequestBody Map<String, Object> request) {
+        logger.debug("Buscando mascotas por lista de chips");
+
+        try {
+            List<Integer> numChips = objectMapper.convertValue(request.get("numChips"), new TypeReference<List<Integer>>() {});
+            MascotaLookup lookup = hibernateMascotaService.findMascotasByIds(numChips);
+
+            return ResponseEntity.ok(McpEnvelope.success("find_mascotas_by_ids", lookup));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(McpEnvelope.error("find_mascotas_by_ids", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error buscando mascotas por chip", e);
+
+            return ResponseEntity.status(500)
+                    .body(McpEnvelope.error("find_mascotas_by_ids", "Error buscando mascotas: " + e.getMessage()));
         }
     }
 
-    @PostMapping("/find_all_mascotas")
-    public ResponseEntity<Map<String, Object>> findAllMascotas() {
-        logger.debug("Obteniendo todas las mascotas");
+    @PostMapping("/delete_mascotas")
+    public ResponseEntity<McpEnvelope> deleteMascotas(@RequestBody Map<String, Object> request) {
+        logger.debug("Borrado masivo de mascotas");
 
         try {
-            List<Mascota> mascotas = hibernateMascotaService.findAll();
+            List<Integer> numChips = objectMapper.convertValue(request.get("numChips"), new TypeReference<List<Integer>>() {});
+            MascotaQueryDto filter = objectMapper.convertValue(request.get("filter"), MascotaQueryDto.class);
+            int deleted = hibernateMascotaService.deleteMascotas(numChips, filter);
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("tool", "find_all_mascotas");
-            response.put("result", mascotas);
-            response.put("count", mascotas.size());
-            response.put("status", "success");
+            return ResponseEntity.ok(McpEnvelope.success("delete_mascotas", deleted));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(McpEnvelope.error("delete_mascotas", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error en el borrado masivo de mascotas", e);
 
-            return ResponseEntity.ok(response);
+            return ResponseEntity.status(500)
+                    .body(McpEnvelope.error("delete_mascotas", "Error borrando mascotas: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/find_all_mascotas")
+    public ResponseEntity<McpEnvelope> findAllMascotas(@RequestBody(required = false) Map<String, Object> request,
+                                                       @RequestParam(required = false) String mode,
+                                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        logger.debug("Obteniendo mascotas paginadas por cursor");
+
+        try {
+            Integer limit = limitOf(request);
+            String etag = dataVersion.etag("find_all_mascotas", cursorOf(request), limit);
+            if (MascotaDataVersion.matches(ifNoneMatch, etag)) {
+                return notModified(etag);
+            }
+
+            MascotaPage<MascotaView> page = hibernateMascotaService.findAllPage(cursorOf(request), limit,
+                    PersistenceMode.parse(mode));
+
+            return ResponseEntity.ok().eTag(etag).body(McpEnvelope.page("find_all_mascotas", page));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(McpEnvelope.error("find_all_mascotas", e.getMessage()));
         } catch (Exception e) {
             logger.error("Error obteniendo mascotas", e);
 
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "Error obteniendo mascotas: " + e.getMessage());
-            error.put("tool", "find_all_mascotas");
-            error.put("status", "error");
-
-            return ResponseEntity.status(500).body(error);
+            return ResponseEntity.status(500)
+                    .body(McpEnvelope.error("find_all_mascotas", "Error obteniendo mascotas: " + e.getMessage()));
         }
     }
 
     @PostMapping("/find_mascotas_by_tipo")
-    public ResponseEntity<Map<String, Object>> findMascotasByTipo(@RequestBody Map<String, String> request) {
+    public ResponseEntity<McpEnvelope> findMascotasByTipo(@RequestBody Map<String, Object> request,
+                                                          @RequestParam(required = false) String mode,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         logger.debug("Buscando mascotas por tipo");
 
         try {
-            String tipo = request.get("tipo");
-            List<Mascota> mascotas = hibernateMascotaService.findMascotasByTipo(tipo);
+            String tipo = stringOf(request, "tipo");
+            Integer limit = limitOf(request);
+            String etag = dataVersion.etag("find_mascotas_by_tipo", tipo, cursorOf(request), limit);
+            if (MascotaDataVersion.matches(ifNoneMatch, etag)) {
+                return notModified(etag);
+            }
+
+            MascotaPage<MascotaView> page = hibernateMascotaService.findMascotasByTipoPage(tipo, cursorOf(request), limit,
+                    PersistenceMode.parse(mode));
+
+            return ResponseEntity.ok().eTag(etag).body(McpEnvelope.page("find_mascotas_by_tipo", page));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(McpEnvelope.error("find_mascotas_by_tipo", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error buscando mascotas por tipo", e);
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("tool", "find_mascotas_by_tipo");
-            response.put("result", mascotas);
-            response.put("count", mascotas.size());
-            response.put("status", "success");
+            return ResponseEntity.status(500)
+                    .body(McpEnvelope.error("find_mascotas_by_tipo", "Error buscando mascotas por tipo: " + e.getMessage()));
+        }
+    }
 
-            return ResponseEntity.ok(response);
+    @PostMapping("/search_mascotas")
+    public ResponseEntity<McpEnvelope> searchMascotas(@RequestBody MascotaQueryDto query,
+                                                      @RequestParam(required = false) String mode) {
+        logger.debug("Buscando mascotas con filtros: {}", query);
+
+        try {
+            MascotaPage<MascotaView> page = hibernateMascotaService.searchMascotasPage(query, PersistenceMode.parse(mode));
+
+            return ResponseEntity.ok(McpEnvelope.page("search_mascotas", page));
         } catch (Exception e) {
-            logger.error("Error buscando mascotas por tipo", e);
+            logger.error("Error buscando mascotas con filtros", e);
 
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "Error buscando mascotas por tipo: " + e.getMessage());
-            error.put("tool", "find_mascotas_by_tipo");
-            error.put("status", "error");
+            return ResponseEntity.status(500)
+                    .body(McpEnvelope.error("search_mascotas", "Error buscando mascotas: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/search_mascotas_by_nombre")
+    public ResponseEntity<McpEnvelope> searchMascotasByNombre(@RequestBody Map<String, Object> request) {
+        logger.debug("Buscando mascotas por nombre");
+
+        try {
+            String nombre = stringOf(request, "nombre");
+            List<MascotaView> mascotas = hibernateMascotaService.searchMascotasByNombre(nombre, limitOf(request));
+
+            return ResponseEntity.ok(McpEnvelope.success("search_mascotas_by_nombre", mascotas));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(McpEnvelope.error("search_mascotas_by_nombre", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error buscando mascotas por nombre", e);
+
+            return ResponseEntity.status(500)
+                    .body(McpEnvelope.error("search_mascotas_by_nombre", "Error buscando mascotas por nombre: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/fuzzy_search_mascotas")
+    public ResponseEntity<McpEnvelope> fuzzySearchMascotas(@RequestBody Map<String, Object> request) {
+        logger.debug("Búsqueda aproximada de mascotas por nombre");
+
+        try {
+            String nombre = stringOf(request, "nombre");
+            List<MascotaView> mascotas = hibernateMascotaService.fuzzySearchMascotas(nombre, limitOf(request));
+
+            return ResponseEntity.ok(McpEnvelope.success("fuzzy_search_mascotas", mascotas));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(McpEnvelope.error("fuzzy_search_mascotas", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error en la búsqueda aproximada de mascotas", e);
+
+            return ResponseEntity.status(500)
+                    .body(McpEnvelope.error("fuzzy_search_mascotas", "Error en la búsqueda aproximada: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/analyze_mascotas")
+    public ResponseEntity<McpEnvelope> analyzeMascotas(@RequestBody(required = false) Map<String, Object> request) {
+        logger.debug("Estadísticas de mascotas desde el snapshot columnar");
+
+        try {
+            MascotaQueryDto filter = request != null
+                    ? objectMapper.convertValue(request.get("filter"), MascotaQueryDto.class) : null;
+            String groupBy = stringOf(request, "groupBy");
+            List<MascotaStats> stats = hibernateMascotaService.analyzeMascotas(filter, groupBy);
+
+            return ResponseEntity.ok(McpEnvelope.success("analyze_mascotas", stats));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(McpEnvelope.error("analyze_mascotas", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error calculando estadísticas de mascotas", e);
+
+            return ResponseEntity.status(500)
+                    .body(McpEnvelope.error("analyze_mascotas", "Error calculando estadísticas: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/filter_mascotas")
+    public ResponseEntity<McpEnvelope> filterMascotas(@RequestBody(required = false) MascotaQueryDto filter) {
+        logger.debug("Filtrando mascotas en el snapshot columnar: {}", filter);
+
+        try {
+            MascotaPage<MascotaView> page = hibernateMascotaService.filterMascotas(filter);
+
+            return ResponseEntity.ok(McpEnvelope.page("filter_mascotas", page));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(McpEnvelope.error("filter_mascotas", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error filtrando mascotas", e);
+
+            return ResponseEntity.status(500)
+                    .body(McpEnvelope.error("filter_mascotas", "Error filtrando mascotas: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/mascota_stats")
+    public ResponseEntity<McpEnvelope> mascotaStats(@RequestBody(required = false) Map<String, Object> request) {
+        logger.debug("Estadísticas de mascotas con GROUP BY");
+
+        try {
+            String groupBy = stringOf(request, "groupBy");
+            Boolean cached = booleanOf(request, "cached");
+            List<MascotaStats> stats = hibernateMascotaService.mascotaStats(groupBy, cached);
+
+            return ResponseEntity.ok(McpEnvelope.success("mascota_stats", stats));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(McpEnvelope.error("mascota_stats", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error calculando estadísticas de mascotas", e);
+
+            return ResponseEntity.status(500)
+                    .body(McpEnvelope.error("mascota_stats", "Error calculando estadísticas: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/transfer_data_batched")
+    public ResponseEntity<McpEnvelope> transferDataBatched(@RequestBody Map<String, Object> request,
+                                                           @RequestParam(required = false) String mode) {
+        logger.debug("Transfiriendo mascotas por bloques");
+
+        try {
+            List<Mascota> mascotas = objectMapper.convertValue(request.get("mascotas"), new TypeReference<List<Mascota>>() {});
+            TransferResult result = hibernateMascotaService.transferDataBatched(mascotas, intOf(request, "chunkSize"),
+                    PersistenceMode.parse(mode));
+
+            return ResponseEntity.ok(McpEnvelope.success("transfer_data_batched", result));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(McpEnvelope.error("transfer_data_batched", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error transfiriendo mascotas", e);
+
+            return ResponseEntity.status(500)
+                    .body(McpEnvelope.error("transfer_data_batched", "Error transfiriendo mascotas: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/patch_mascotas")
+    public ResponseEntity<McpEnvelope> patchMascotas(@RequestBody List<MascotaPatch> patches) {
+        logger.debug("Patch de {} mascotas con UPDATE en batch", patches.size());
+
+        try {
+            TransferResult result = hibernateMascotaService.patchMascotas(patches);
+
+            return ResponseEntity.ok(McpEnvelope.success("patch_mascotas", result));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(McpEnvelope.error("patch_mascotas", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error en patch de mascotas", e);
+
+            return ResponseEntity.status(500)
+                    .body(McpEnvelope.error("patch_mascotas", "Error en patch de mascotas: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/import_mascotas")
+    public ResponseEntity<McpEnvelope> importMascotas(@RequestBody Map<String, String> request) {
+        logger.debug("Importación de mascotas desde {}", request.get("path"));
 
-            return ResponseEntity.status(500).body(error);
+        try {
+            ImportResult result = mascotaImporter.importMascotas(request.get("path"), request.get("format"));
+
+            return ResponseEntity.ok(McpEnvelope.success("import_mascotas", result));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(McpEnvelope.error("import_mascotas", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(McpEnvelope.error("import_mascotas", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error importando mascotas", e);
+
+            return ResponseEntity.status(500)
+                    .body(McpEnvelope.error("import_mascotas", "Error importando mascotas: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/export_mascotas")
+    public ResponseEntity<McpEnvelope> exportMascotas(@RequestBody Map<String, String> request) {
+        logger.debug("Exportación de mascotas a {}", request.get("path"));
+
+        try {
+            ExportResult result = mascotaExporter.exportMascotas(request.get("path"), request.get("format"),
+                    request.get("compression"));
+
+            return ResponseEntity.ok(McpEnvelope.success("export_mascotas", result));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(McpEnvelope.error("export_mascotas", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error exportando mascotas", e);
+
+            return ResponseEntity.status(500)
+                    .body(McpEnvelope.error("export_mascotas", "Error exportando mascotas: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/upsert_mascotas")
+    public ResponseEntity<McpEnvelope> upsertMascotas(@RequestBody List<Mascota> mascotas) {
+        logger.debug("Upsert de {} mascotas con MERGE", mascotas.size());
+
+        try {
+            TransferResult result = hibernateMascotaService.upsertMascotas(mascotas);
+
+            return ResponseEntity.ok(McpEnvelope.success("upsert_mascotas", result));
+        } catch (Exception e) {
+            logger.error("Error en upsert de mascotas", e);
+
+            return ResponseEntity.status(500)
+                    .body(McpEnvelope.error("upsert_mascotas", "Error en upsert de mascotas: " + e.getMessage()));
+        }
+    }
+
+    // ===== Streaming NDJSON =====
+
+    @PostMapping("/find_all_mascotas/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllMascotas() {
+        logger.debug("Exportando todas las mascotas en streaming NDJSON");
+
+        return ndjson("find_all_mascotas", null);
+    }
+
+    @PostMapping("/find_mascotas_by_tipo/stream")
+    public ResponseEntity<StreamingResponseBody> streamMascotasByTipo(@RequestBody Map<String, Object> request) {
+        logger.debug("Exportando mascotas por tipo en streaming NDJSON");
+
+        String tipo;
+        try {
+            tipo = stringOf(request, "tipo");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ndjson("find_mascotas_by_tipo", tipo);
+    }
+
+    /**
+     * Respuesta NDJSON: una mascota por línea, escrita mientras Hibernate recorre
+     * el resultado. No se construye ni la lista ni el envoltorio McpEnvelope, así que
+     * la memoria no depende del tamaño de la tabla y la primera fila sale en
+     * cuanto la BD la devuelve.
+     *
+     * Al ser una respuesta ya iniciada, un error a mitad no puede convertirse en
+     * un 500: se registra en el log y se corta la conexión.
+     */
+    private ResponseEntity<StreamingResponseBody> ndjson(String tool, String tipo) {
+        ObjectWriter writer = objectMapper.writerFor(MascotaView.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+
+                long[] written = {0};
+                long rows = hibernateMascotaService.streamMascotas(tipo, mascota -> {
+                    try {
+                        writer.writeValue(generator, mascota);
+                        generator.writeRaw('\n');
+                        if (++written[0] == 1 || written[0] % NDJSON_FLUSH_EVERY == 0) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.flush();
+                logger.debug("{} (stream): {} mascotas enviadas", tool, rows);
+            } catch (RuntimeException e) {
+                logger.error("Error en streaming de {}", tool, e);
+                throw e;
+            }
+        };
+
+        return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(body);
+    }
+
+    // ===== Paginación por cursor =====
+
+    /**
+     * 304 Not Modified: la versión de los datos no ha cambiado desde la ETag
+     * que envía el cliente. Se responde sin llamar al servicio (ni a H2) y sin
+     * cuerpo.
+     */
+    private static ResponseEntity<McpEnvelope> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    }
+
+    private static String cursorOf(Map<String, Object> request) {
+        return stringOf(request, "cursor");
+    }
+
+    private static Integer limitOf(Map<String, Object> request) {
+        return intOf(request, "limit");
+    }
+
+    /*
+     * Lectura de campos del cuerpo JSON (Map). Se admiten las variantes que
+     * mandan los clientes habituales (número o texto "20", booleano o texto
+     * "true"); cualquier otro tipo es un error del cliente y se lanza
+     * IllegalArgumentException para responder 400, no un ClassCastException
+     * que acabaría en 500.
+     */
+
+    private static String stringOf(Map<String, Object> request, String key) {
+        Object value = request != null ? request.get(key) : null;
+        if (value == null || value instanceof String) {
+            return (String) value;
+        }
+        throw new IllegalArgumentException("'" + key + "' debe ser un texto: " + value);
+    }
+
+    private static Integer intOf(Map<String, Object> request, String key) {
+        Object value = request != null ? request.get(key) : null;
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Number number && number.doubleValue() == number.intValue()) {
+            return number.intValue();
+        }
+        if (value instanceof String text) {
+            try {
+                return Integer.valueOf(text.trim());
+            } catch (NumberFormatException e) {
+                // cae al error de abajo
+            }
+        }
+        throw new IllegalArgumentException("'" + key + "' debe ser un número entero: " + value);
+    }
+
+    private static Boolean booleanOf(Map<String, Object> request, String key) {
+        Object value = request != null ? request.get(key) : null;
+        if (value == null || value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof String text && (text.equalsIgnoreCase("true") || text.equalsIgnoreCase("false"))) {
+            return Boolean.valueOf(text);
+        }
+        if (value instanceof Number number && (number.doubleValue() == 0 || number.doubleValue() == 1)) {
+            return number.intValue() == 1;
         }
+        throw new IllegalArgumentException("'" + key + "' debe ser true o false: " + value);
     }
 }
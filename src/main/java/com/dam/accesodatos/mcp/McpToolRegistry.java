@@ -1,6 +1,11 @@
 package com.dam.accesodatos.mcp;
 
 import com.dam.accesodatos.ra3.HibernateMascotaService;
+import com.dam.accesodatos.ra3.MascotaExporter;
+import com.dam.accesodatos.ra3.MascotaImporter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.mcp.server.annotation.Tool;
@@ -9,9 +14,16 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Component
 public class McpToolRegistry {
@@ -24,13 +36,27 @@ public class McpToolRegistry {
     @Autowired
     private HibernateMascotaService hibernateMascotaService;
     
+    @Autowired
+    private MascotaImporter mascotaImporter;
+
+    @Autowired
+    private MascotaExporter mascotaExporter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     private final List<McpToolInfo> registeredTools = new ArrayList<>();
+
+    // Búsqueda por nombre en /mcp/invoke/{tool}
+    private final Map<String, McpToolInfo> toolsByName = new HashMap<>();
     
     @PostConstruct
     public void registerTools() {
         logger.info("Registrando herramientas MCP Hibernate/JPA...");
 
         registerToolsFromService(hibernateMascotaService, HibernateMascotaService.class);
+        registerToolsFromService(mascotaImporter, MascotaImporter.class);
+        registerToolsFromService(mascotaExporter, MascotaExporter.class);
         
         logger.info("Total de herramientas MCP registradas: {}", registeredTools.size());
         
@@ -48,29 +74,101 @@ public class McpToolRegistry {
                 String toolName = toolAnnotation.name().isEmpty() ? method.getName() : toolAnnotation.name();
                 String description = toolAnnotation.description();
                 
-                McpToolInfo toolInfo = new McpToolInfo(toolName, description, method, service);
+                McpToolInfo toolInfo = new McpToolInfo(toolName, description, method, service,
+                        invokerFor(method, service), parametersOf(method));
                 registeredTools.add(toolInfo);
+                toolsByName.put(toolName, toolInfo);
                 
                 logger.debug("Registrada herramienta MCP: {} - {}", toolName, description);
             }
         }
     }
     
+    /**
+     * MethodHandle resuelto una sola vez por herramienta: ligado al servicio y
+     * adaptado a la forma (Object[]) -> Object, de modo que todas las
+     * herramientas se invocan igual con invokeExact() y sin Method.invoke().
+     */
+    private static MethodHandle invokerFor(Method method, Object service) {
+        try {
+            int arity = method.getParameterCount();
+            return MethodHandles.publicLookup()
+                    .unreflect(method)
+                    .bindTo(service)
+                    .asType(MethodType.genericMethodType(arity))
+                    .asSpreader(Object[].class, arity);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("No se puede acceder a la herramienta " + method, e);
+        }
+    }
+
+    /**
+     * Metadatos de cada parámetro: nombre (compilado con -parameters, lo añade
+     * el plugin de Spring Boot) y un ObjectReader de Jackson para su tipo
+     * genérico, creado y cacheado aquí y no en cada llamada.
+     */
+    private ToolParameter[] parametersOf(Method method) {
+        Parameter[] parameters = method.getParameters();
+        ToolParameter[] result = new ToolParameter[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            Parameter parameter = parameters[i];
+            if (!parameter.isNamePresent()) {
+                logger.warn("{}: compilado sin -parameters, el argumento {} se llamará {}",
+                        method.getName(), i, parameter.getName());
+            }
+            ObjectReader reader = objectMapper.readerFor(
+                    objectMapper.getTypeFactory().constructType(parameter.getParameterizedType()));
+            result[i] = new ToolParameter(parameter.getName(), parameter.getType().isPrimitive(), reader);
+        }
+        return result;
+    }
+
     public List<McpToolInfo> getRegisteredTools() {
         return new ArrayList<>(registeredTools);
     }
+
+    public McpToolInfo findTool(String name) {
+        return toolsByName.get(name);
+    }
+
+    /**
+     * Ejecuta una herramienta con argumentos JSON.
+     *
+     * Los argumentos van por nombre de parámetro: {"tipo": "Perro", "limit": 20}.
+     * Si la herramienta tiene un único parámetro y el JSON no lo nombra, el
+     * JSON completo es ese parámetro (p. ej. el MascotaQueryDto de
+     * search_mascotas o el array de upsert_mascotas).
+     */
+    public Object invoke(McpToolInfo tool, JsonNode arguments) {
+        Object[] args = tool.bindArguments(arguments);
+        try {
+            return (Object) tool.invoker.invokeExact(args);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Error ejecutando " + tool.getName(), e);
+        }
+    }
+
+    public record ToolParameter(String name, boolean primitive, ObjectReader reader) {
+    }
     
     public static class McpToolInfo {
         private final String name;
         private final String description;
         private final Method method;
         private final Object service;
+        private final MethodHandle invoker;
+        private final ToolParameter[] parameters;
         
-        public McpToolInfo(String name, String description, Method method, Object service) {
+        public McpToolInfo(String name, String description, Method method, Object service,
+                           MethodHandle invoker, ToolParameter[] parameters) {
             this.name = name;
             this.description = description;
             this.method = method;
             this.service = service;
+            this.invoker = invoker;
+            this.parameters = parameters;
         }
         
         public String getName() {
@@ -88,5 +186,36 @@ public class McpToolRegistry {
         public Object getService() {
             return service;
         }
+
+        public List<String> getParameterNames() {
+            List<String> names = new ArrayList<>(parameters.length);
+            for (ToolParameter parameter : parameters) {
+                names.add(parameter.name());
+            }
+            return names;
+        }
+
+        Object[] bindArguments(JsonNode arguments) {
+            Object[] args = new Object[parameters.length];
+            boolean wholeBody = parameters.length == 1 && arguments != null
+                    && !(arguments.isObject() && arguments.has(parameters[0].name()));
+            for (int i = 0; i < parameters.length; i++) {
+                ToolParameter parameter = parameters[i];
+                JsonNode value = wholeBody ? arguments
+                        : arguments != null ? arguments.get(parameter.name()) : null;
+                if (value == null || value.isNull()) {
+                    if (parameter.primitive()) {
+                        throw new IllegalArgumentException("Falta el argumento obligatorio '" + parameter.name() + "'");
+                    }
+                    continue;
+                }
+                try {
+                    args[i] = parameter.reader().readValue(value);
+                } catch (IOException e) {
+                    throw new IllegalArgumentException("Argumento '" + parameter.name() + "' no válido: " + e.getMessage(), e);
+                }
+            }
+            return args;
+        }
     }
 }
@@ -0,0 +1,66 @@
+package com.dam.accesodatos.model;
+
+/**
+ * Resultado de export_mascotas.
+ *
+ * bytes es el tamaño final del fichero (ya comprimido si compression no es
+ * "none"); rows las mascotas escritas.
+ */
+public class ExportResult {
+
+    private final String file;
+    private final String format;
+    private final String compression;
+    private final long rows;
+    private final long bytes;
+    private final long totalMillis;
+
+    public ExportResult(String file, String format, String compression, long rows, long bytes, long totalMillis) {
+        this.file = file;
+        this.format = format;
+        this.compression = compression;
+        this.rows = rows;
+        this.bytes = bytes;
+        this.totalMillis = totalMillis;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public double getRowsPerSecond() {
+        return totalMillis == 0 ? rows : rows * 1000.0 / totalMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ExportResult{" +
+                "file='" + file + '\'' +
+                ", format='" + format + '\'' +
+                ", compression='" + compression + '\'' +
+                ", rows=" + rows +
+                ", bytes=" + bytes +
+                ", totalMillis=" + totalMillis +
+                '}';
+    }
+}
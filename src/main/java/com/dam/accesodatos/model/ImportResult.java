@@ -0,0 +1,104 @@
+package com.dam.accesodatos.model;
+
+import java.util.List;
+
+/**
+ * Resultado de import_mascotas.
+ *
+ * rowsRead cuenta las líneas de datos leídas del fichero (sin cabecera ni
+ * líneas vacías); cada una acaba en imported o en rejected. rejections solo
+ * guarda los primeros rechazos (pawner.import.max-rejections), con su número
+ * de línea, para que un fichero muy malo no llene la memoria.
+ */
+public class ImportResult {
+
+    private final String file;
+    private final String format;
+    private final long rowsRead;
+    private final long imported;
+    private final long rejected;
+    private final List<RejectedRow> rejections;
+    private final long totalMillis;
+
+    public ImportResult(String file, String format, long rowsRead, long imported, long rejected,
+                        List<RejectedRow> rejections, long totalMillis) {
+        this.file = file;
+        this.format = format;
+        this.rowsRead = rowsRead;
+        this.imported = imported;
+        this.rejected = rejected;
+        this.rejections = List.copyOf(rejections);
+        this.totalMillis = totalMillis;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public List<RejectedRow> getRejections() {
+        return rejections;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public double getRowsPerSecond() {
+        return totalMillis == 0 ? rowsRead : rowsRead * 1000.0 / totalMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportResult{" +
+                "file='" + file + '\'' +
+                ", format='" + format + '\'' +
+                ", rowsRead=" + rowsRead +
+                ", imported=" + imported +
+                ", rejected=" + rejected +
+                ", totalMillis=" + totalMillis +
+                '}';
+    }
+
+    /**
+     * Línea del fichero que no se ha importado y por qué.
+     */
+    public static class RejectedRow {
+
+        private final long line;
+        private final String reason;
+
+        public RejectedRow(long line, String reason) {
+            this.line = line;
+            this.reason = reason;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "línea " + line + ": " + reason;
+        }
+    }
+}
@@ -2,10 +2,15 @@ package com.dam.accesodatos.model;
 
 import java.util.Objects;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 
@@ -30,6 +35,13 @@ import jakarta.validation.constraints.Size;
  * strategy)
  * - @Column: Mapeo explícito de campos a columnas con restricciones
  * - @NotBlank, @Nombre: Validaciones de Bean Validation
+ * - @Cacheable + @Cache: entidad en la caché de segundo nivel (región
+ * "mascotas", Caffeine acotada con TTL). find() por chip no va a la BD
+ * si la mascota está en caché; update/delete/persist la mantienen al día.
+ * - @Version: bloqueo optimista. Cada UPDATE de Hibernate lleva
+ * "WHERE version = ?" y suma 1; si otra transacción cambió la fila entre
+ * la lectura y el commit, no se actualiza nada y Hibernate lanza
+ * OptimisticLockException en lugar de pisar el cambio ajeno.
  *
  * NOTA PEDAGÓGICA:
  * El constructor sin argumentos es OBLIGATORIO para JPA. Hibernate lo usa
@@ -37,6 +49,8 @@ import jakarta.validation.constraints.Size;
  */
 @Entity
 @Table(name = "mascotas")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "mascotas")
 public class Mascota {
 
     @Id
@@ -61,6 +75,11 @@ public class Mascota {
     @Column(name = "otros_detalles", length = 255)
     private String otrosDetalles; // Para datos como: castrado s/n, alergias, preferencias, etc
 
+    // Mismo DEFAULT que schema.sql: con ddl-auto (tests, benchmarks) un INSERT sin version también vale
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "BIGINT DEFAULT 0 NOT NULL")
+    private long version;
+
     // ===== CONSTRUCTOR SIN ARGUMENTOS (OBLIGATORIO PARA JPA) =====
 
     /**
@@ -131,6 +150,14 @@ public class Mascota {
         this.otrosDetalles = otrosDetalles;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     // ===== EQUALS() Y HASHCODE() =====
 
     @Override
@@ -159,6 +186,7 @@ public class Mascota {
                 ", edad=" + edad +
                 ", sexo='" + sexo + '\'' +
                 ", otrosDetalles='" + otrosDetalles + '\'' +
+                ", version=" + version +
                 '}';
     }
 }
@@ -0,0 +1,44 @@
+package com.dam.accesodatos.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultado de find_mascotas_by_ids.
+ *
+ * mascotas tiene una posición por cada chip pedido, en el mismo orden; null
+ * donde el chip no existe. missing repite esos chips para no tener que
+ * recorrer la lista buscando huecos.
+ */
+public class MascotaLookup {
+
+    private final List<Mascota> mascotas;
+    private final List<Integer> missing;
+
+    public MascotaLookup(List<Mascota> mascotas, List<Integer> missing) {
+        // Collections.unmodifiableList y no List.copyOf: los huecos son null
+        this.mascotas = Collections.unmodifiableList(mascotas);
+        this.missing = List.copyOf(missing);
+    }
+
+    public List<Mascota> getMascotas() {
+        return mascotas;
+    }
+
+    public List<Integer> getMissing() {
+        return missing;
+    }
+
+    public int getFound() {
+        return mascotas.size() - missing.size();
+    }
+
+    @Override
+    public String toString() {
+        return "MascotaLookup{" +
+                "requested=" + mascotas.size() +
+                ", found=" + getFound() +
+                ", missing=" + missing +
+                '}';
+    }
+}
@@ -0,0 +1,91 @@
+package com.dam.accesodatos.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Página de resultados con paginación por cursor (keyset sobre num_chip).
+ *
+ * En lugar de OFFSET (que obliga a la BD a recorrer y descartar todas las filas
+ * anteriores), cada página pide "las siguientes N mascotas con num_chip mayor
+ * que el último devuelto". Así la página 1000 cuesta lo mismo que la primera.
+ *
+ * El cursor es opaco para el cliente: solo debe reenviarlo tal cual en
+ * {@code cursor} para obtener la página siguiente.
+ */
+public class MascotaPage<T> {
+
+    public static final int DEFAULT_LIMIT = 10;
+    public static final int MAX_LIMIT = 500;
+
+    private static final String CURSOR_PREFIX = "k1:";
+
+    private final List<T> result;
+    private final String nextCursor;
+    private final boolean hasMore;
+
+    public MascotaPage(List<T> result, String nextCursor, boolean hasMore) {
+        this.result = result;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    public List<T> getResult() {
+        return result;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public int getCount() {
+        return result.size();
+    }
+
+    /**
+     * Normaliza el tamaño de página pedido: por defecto DEFAULT_LIMIT y nunca
+     * más de MAX_LIMIT, para que una sola llamada no cargue la tabla entera.
+     */
+    public static int normalizeLimit(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    public static String encodeCursor(int lastNumChip) {
+        byte[] raw = (CURSOR_PREFIX + lastNumChip).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    public static int decodeCursor(String cursor) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor de paginación no válido: " + cursor, e);
+        }
+        if (!raw.startsWith(CURSOR_PREFIX)) {
+            throw new IllegalArgumentException("Cursor de paginación no válido: " + cursor);
+        }
+        try {
+            return Integer.parseInt(raw.substring(CURSOR_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor de paginación no válido: " + cursor, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MascotaPage{" +
+                "count=" + result.size() +
+                ", nextCursor='" + nextCursor + '\'' +
+                ", hasMore=" + hasMore +
+                '}';
+    }
+}
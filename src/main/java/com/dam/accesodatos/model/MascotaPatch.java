@@ -0,0 +1,37 @@
+package com.dam.accesodatos.model;
+
+/**
+ * Cambio parcial de una mascota para patch_mascotas: el número de chip más
+ * los campos de MascotaUpdateDto que se quieren cambiar (los null no se tocan).
+ */
+public class MascotaPatch extends MascotaUpdateDto {
+
+    private Integer numChip;
+
+    public MascotaPatch() {}
+
+    public MascotaPatch(Integer numChip, String nombre, String tipoMascota, Integer edad, String sexo, String otrosDetalles) {
+        super(nombre, tipoMascota, edad, sexo, otrosDetalles);
+        this.numChip = numChip;
+    }
+
+    public Integer getNumChip() {
+        return numChip;
+    }
+
+    public void setNumChip(Integer numChip) {
+        this.numChip = numChip;
+    }
+
+    @Override
+    public String toString() {
+        return "MascotaPatch{" +
+                "numChip=" + numChip +
+                ", nombre='" + getNombre() + '\'' +
+                ", tipoMascota='" + getTipoMascota() + '\'' +
+                ", edad=" + getEdad() +
+                ", sexo='" + getSexo() + '\'' +
+                ", otrosDetalles='" + getOtrosDetalles() + '\'' +
+                '}';
+    }
+}
@@ -7,6 +7,9 @@ public class MascotaQueryDto {
     private String sexo;
     private Integer limit;
     private Integer offset;
+    private String cursor;
+    // true si limit u offset se han indicado (no son los valores por defecto)
+    private boolean explicitPaging;
 
     public MascotaQueryDto() {
         this.limit = 10;
@@ -19,6 +22,7 @@ public class MascotaQueryDto {
         this.sexo = sexo;
         this.limit = limit != null ? limit : 10;
         this.offset = offset != null ? offset : 0;
+        this.explicitPaging = limit != null || offset != null;
     }
 
     public String getNombre() {
@@ -51,6 +55,7 @@ public class MascotaQueryDto {
 
     public void setLimit(Integer limit) {
         this.limit = limit;
+        this.explicitPaging |= limit != null;
     }
 
     public Integer getOffset() {
@@ -59,6 +64,27 @@ public class MascotaQueryDto {
 
     public void setOffset(Integer offset) {
         this.offset = offset;
+        this.explicitPaging |= offset != null;
+    }
+
+    /**
+     * Indica si la llamada pidió limit u offset. searchMascotas solo pagina
+     * en ese caso; si no, devuelve todas las coincidencias.
+     */
+    public boolean hasExplicitPaging() {
+        return explicitPaging;
+    }
+
+    /**
+     * Cursor opaco devuelto en {@code nextCursor} por la página anterior.
+     * Si está presente se ignora offset (paginación keyset).
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
     }
 
     @Override
@@ -69,6 +95,7 @@ public class MascotaQueryDto {
                 ", sexo='" + sexo + '\'' +
                 ", limit=" + limit +
                 ", offset=" + offset +
+                ", cursor='" + cursor + '\'' +
                 '}';
     }
 }
@@ -0,0 +1,62 @@
+package com.dam.accesodatos.model;
+
+/**
+ * Estadísticas de edad de un grupo de mascotas.
+ *
+ * tipoMascota y sexo identifican el grupo; son null cuando no se agrupa por
+ * ese campo. Con count = 0 no hay edades: minEdad, maxEdad y avgEdad son null.
+ */
+public class MascotaStats {
+
+    private final String tipoMascota;
+    private final String sexo;
+    private final long count;
+    private final Integer minEdad;
+    private final Integer maxEdad;
+    private final Double avgEdad;
+
+    public MascotaStats(String tipoMascota, String sexo, long count, Integer minEdad, Integer maxEdad, Double avgEdad) {
+        this.tipoMascota = tipoMascota;
+        this.sexo = sexo;
+        this.count = count;
+        this.minEdad = minEdad;
+        this.maxEdad = maxEdad;
+        this.avgEdad = avgEdad;
+    }
+
+    public String getTipoMascota() {
+        return tipoMascota;
+    }
+
+    public String getSexo() {
+        return sexo;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public Integer getMinEdad() {
+        return minEdad;
+    }
+
+    public Integer getMaxEdad() {
+        return maxEdad;
+    }
+
+    public Double getAvgEdad() {
+        return avgEdad;
+    }
+
+    @Override
+    public String toString() {
+        return "MascotaStats{" +
+                "tipoMascota='" + tipoMascota + '\'' +
+                ", sexo='" + sexo + '\'' +
+                ", count=" + count +
+                ", minEdad=" + minEdad +
+                ", maxEdad=" + maxEdad +
+                ", avgEdad=" + avgEdad +
+                '}';
+    }
+}
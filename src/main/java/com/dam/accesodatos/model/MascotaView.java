@@ -0,0 +1,80 @@
+package com.dam.accesodatos.model;
+
+/**
+ * Proyección de solo lectura de Mascota para los listados.
+ *
+ * Se construye directamente desde la consulta con una expresión constructora
+ * JPQL ("SELECT new com.dam.accesodatos.model.MascotaView(m.numChip, ...)").
+ * A diferencia de una entidad Mascota, Hibernate no la registra en el
+ * contexto de persistencia: no guarda copia (snapshot) de sus valores ni la
+ * revisa en el dirty checking. Para listas que solo se van a serializar a
+ * JSON es todo coste sin beneficio.
+ *
+ * Tiene los mismos getters que Mascota (también getVersion, para que el
+ * cliente pueda mandar la versión leída en una actualización), así que el
+ * JSON es idéntico.
+ */
+public final class MascotaView {
+
+    public static final String JPQL_SELECT = "SELECT new com.dam.accesodatos.model.MascotaView("
+            + "m.numChip, m.nombre, m.tipoMascota, m.edad, m.sexo, m.otrosDetalles, m.version)";
+
+    private final int numChip;
+    private final String nombre;
+    private final String tipoMascota;
+    private final int edad;
+    private final String sexo;
+    private final String otrosDetalles;
+    private final long version;
+
+    public MascotaView(int numChip, String nombre, String tipoMascota, int edad, String sexo, String otrosDetalles,
+                       long version) {
+        this.numChip = numChip;
+        this.nombre = nombre;
+        this.tipoMascota = tipoMascota;
+        this.edad = edad;
+        this.sexo = sexo;
+        this.otrosDetalles = otrosDetalles;
+        this.version = version;
+    }
+
+    public int getNumChip() {
+        return numChip;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public String getTipoMascota() {
+        return tipoMascota;
+    }
+
+    public int getEdad() {
+        return edad;
+    }
+
+    public String getSexo() {
+        return sexo;
+    }
+
+    public String getOtrosDetalles() {
+        return otrosDetalles;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "MascotaView{" +
+                "numChip=" + numChip +
+                ", nombre='" + nombre + '\'' +
+                ", tipoMascota='" + tipoMascota + '\'' +
+                ", edad=" + edad +
+                ", sexo='" + sexo + '\'' +
+                ", version=" + version +
+                '}';
+    }
+}
@@ -0,0 +1,61 @@
+package com.dam.accesodatos.model;
+
+import java.util.List;
+
+/**
+ * Resultado de una escritura masiva por bloques: filas tratadas, número y
+ * tamaño de los bloques y cuánto tardó cada uno (chunkMillis).
+ *
+ * Qué es un bloque depende de la operación:
+ * - transfer_data_batched: INSERT con flush() + clear() cada chunkSize
+ *   entidades (batches JDBC y contexto de persistencia acotado).
+ * - upsert_mascotas: un executeBatch() de MERGE por cada chunkSize filas.
+ * - patch_mascotas: un executeBatch() de UPDATE por cada chunkSize patches
+ *   que cambian los mismos campos; rows solo cuenta los chips que existían.
+ */
+public class TransferResult {
+
+    private final int rows;
+    private final int chunks;
+    private final int chunkSize;
+    private final List<Long> chunkMillis;
+    private final long totalMillis;
+
+    public TransferResult(int rows, int chunks, int chunkSize, List<Long> chunkMillis, long totalMillis) {
+        this.rows = rows;
+        this.chunks = chunks;
+        this.chunkSize = chunkSize;
+        this.chunkMillis = chunkMillis;
+        this.totalMillis = totalMillis;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public List<Long> getChunkMillis() {
+        return chunkMillis;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "TransferResult{" +
+                "rows=" + rows +
+                ", chunks=" + chunks +
+                ", chunkSize=" + chunkSize +
+                ", totalMillis=" + totalMillis +
+                '}';
+    }
+}
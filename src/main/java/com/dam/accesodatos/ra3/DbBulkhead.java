@@ -0,0 +1,178 @@
+package com.dam.accesodatos.ra3;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bulkhead de conexiones: limita cuántas llamadas al servicio usan la BD a
+ * la vez.
+ *
+ * Con hilos virtuales (spring.threads.virtual.enabled) Tomcat ya no limita
+ * las peticiones concurrentes con su pool de 200 hilos: miles de peticiones
+ * podrían llegar a la vez a Hikari, que solo tiene maximum-pool-size
+ * conexiones, y fallar por connection-timeout. Este Semaphore (justo, FIFO)
+ * tiene tantos permisos como conexiones el pool; el resto de llamadas
+ * esperan aquí, en un hilo virtual aparcado que apenas cuesta memoria.
+ *
+ * Si el permiso no llega en acquire-timeout se lanza
+ * TransientDataAccessResourceException (el cliente puede reintentar).
+ *
+ * Reentrante por hilo: una llamada que ya tiene permiso no pide otro.
+ *
+ * Las llamadas @HoldsConnection (los /stream y export_mascotas) retienen el
+ * permiso durante toda la respuesta, que con un cliente lento puede durar
+ * minutos. Antes del permiso normal piden uno de un segundo semáforo de
+ * max-streams plazas (por defecto 2, siempre menos que maxConcurrent), con
+ * una espera corta (stream-acquire-timeout-ms): si están todas ocupadas el
+ * stream falla enseguida en lugar de acumular conexiones, y al resto de
+ * llamadas siempre les quedan maxConcurrent - max-streams permisos.
+ */
+@Component
+public class DbBulkhead {
+
+    private static final Logger logger = LoggerFactory.getLogger(DbBulkhead.class);
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long acquireTimeoutMillis;
+
+    private final Semaphore streamPermits;
+    private final int maxStreams;
+    private final long streamAcquireTimeoutMillis;
+    private final LongAdder streamsAcquired = new LongAdder();
+    private final LongAdder streamsRejected = new LongAdder();
+
+    // Profundidad de la llamada actual en este hilo (0 = sin permiso)
+    private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger maxWaiting = new AtomicInteger();
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public DbBulkhead(@Value("${spring.datasource.hikari.maximum-pool-size:10}") int maxConcurrent,
+                      @Value("${pawner.bulkhead.acquire-timeout-ms:30000}") long acquireTimeoutMillis,
+                      @Value("${pawner.bulkhead.max-streams:2}") int maxStreams,
+                      @Value("${pawner.bulkhead.stream-acquire-timeout-ms:1000}") long streamAcquireTimeoutMillis) {
+        this.maxConcurrent = maxConcurrent;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.permits = new Semaphore(maxConcurrent, true);
+        // Con un pool de 1 conexión no se puede reservar nada: el stream la comparte
+        this.maxStreams = Math.max(1, Math.min(maxStreams, maxConcurrent - 1));
+        this.streamAcquireTimeoutMillis = streamAcquireTimeoutMillis;
+        this.streamPermits = new Semaphore(this.maxStreams, true);
+        logger.info("Bulkhead de BD: {} llamadas simultáneas ({} como máximo en streaming), espera máxima {} ms",
+                maxConcurrent, this.maxStreams, acquireTimeoutMillis);
+    }
+
+    /**
+     * Igual que call() para una llamada @HoldsConnection: primero una plaza de
+     * streaming (espera corta) y luego el permiso normal.
+     */
+    public <T> T callStream(Supplier<T> work) {
+        if (depth.get()[0] > 0) {
+            return call(work);
+        }
+        try {
+            if (!streamPermits.tryAcquire(streamAcquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                streamsRejected.increment();
+                throw new TransientDataAccessResourceException("Demasiadas respuestas en streaming a la vez (máximo "
+                        + maxStreams + "); reintenta más tarde");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            streamsRejected.increment();
+            throw new TransientDataAccessResourceException("Espera de streaming interrumpida", e);
+        }
+        streamsAcquired.increment();
+        try {
+            return call(work);
+        } finally {
+            streamPermits.release();
+        }
+    }
+
+    /**
+     * Ejecuta la llamada con un permiso del bulkhead.
+     */
+    public <T> T call(Supplier<T> work) {
+        int[] current = depth.get();
+        if (current[0] > 0) {
+            current[0]++;
+            try {
+                return work.get();
+            } finally {
+                current[0]--;
+            }
+        }
+
+        acquire();
+        current[0] = 1;
+        try {
+            return work.get();
+        } finally {
+            current[0] = 0;
+            permits.release();
+        }
+    }
+
+    private void acquire() {
+        if (permits.tryAcquire()) {
+            acquired.increment();
+            return;
+        }
+
+        int queued = waiting.incrementAndGet();
+        maxWaiting.accumulateAndGet(queued, Math::max);
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new TransientDataAccessResourceException(
+                        "No hay conexión libre tras " + acquireTimeoutMillis + " ms (" + queued + " llamadas en espera)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.increment();
+            throw new TransientDataAccessResourceException("Espera de conexión interrumpida", e);
+        } finally {
+            waiting.decrementAndGet();
+            long waited = System.nanoTime() - start;
+            totalWaitNanos.add(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+        }
+        acquired.increment();
+    }
+
+    public Map<String, Object> snapshot() {
+        long count = acquired.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("inUse", maxConcurrent - permits.availablePermits());
+        stats.put("waiting", waiting.get());
+        stats.put("maxWaiting", maxWaiting.get());
+        stats.put("acquired", count);
+        stats.put("rejected", rejected.sum());
+        stats.put("avgWaitMillis", count == 0 ? 0.0 : totalWaitNanos.sum() / 1_000_000.0 / count);
+        stats.put("maxWaitMillis", maxWaitNanos.get() / 1_000_000.0);
+        stats.put("maxStreams", maxStreams);
+        stats.put("streamsInUse", maxStreams - streamPermits.availablePermits());
+        stats.put("streamsAcquired", streamsAcquired.sum());
+        stats.put("streamsRejected", streamsRejected.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,81 @@
+package com.dam.accesodatos.ra3;
+
+import java.util.function.Supplier;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+
+/**
+ * Aplica el DbBulkhead a todas las llamadas a HibernateMascotaService.
+ *
+ * El interceptor se añade en primera posición del proxy transaccional, antes
+ * que el TransactionInterceptor: el permiso se obtiene ANTES de abrir la
+ * transacción (y pedir conexión a Hikari) y se libera después del commit.
+ * Esto solo coincide con la devolución de la conexión al pool porque
+ * spring.jpa.open-in-view está a false: con Open Session In View el
+ * EntityManager de la petición retendría la conexión hasta el final de la
+ * respuesta y entrarían más llamadas que conexiones.
+ *
+ * Las llamadas que recorren un cursor (streamMascotas, usado por los
+ * endpoints /stream y por export_mascotas) retienen el permiso, igual que la
+ * conexión, durante toda la respuesta; van marcadas con @HoldsConnection y
+ * pasan por DbBulkhead.callStream(), que limita cuántas a la vez.
+ * Se ejecuta con la menor prioridad para que el proxy de @Transactional ya
+ * exista cuando llega aquí.
+ *
+ * Se desactiva con pawner.bulkhead.enabled=false.
+ */
+@Component
+@ConditionalOnProperty(name = "pawner.bulkhead.enabled", havingValue = "true", matchIfMissing = true)
+public class DbBulkheadPostProcessor implements BeanPostProcessor, Ordered {
+
+    private final ObjectProvider<DbBulkhead> bulkhead;
+
+    public DbBulkheadPostProcessor(ObjectProvider<DbBulkhead> bulkhead) {
+        this.bulkhead = bulkhead;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof HibernateMascotaService)) {
+            return bean;
+        }
+
+        DbBulkhead dbBulkhead = bulkhead.getObject();
+        MethodInterceptor interceptor = invocation -> {
+            Supplier<Object> work = () -> {
+                try {
+                    return invocation.proceed();
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+            return AnnotatedElementUtils.hasAnnotation(invocation.getMethod(), HoldsConnection.class)
+                    ? dbBulkhead.callStream(work)
+                    : dbBulkhead.call(work);
+        };
+
+        if (bean instanceof Advised advised && !advised.isFrozen()) {
+            advised.addAdvice(0, interceptor);
+            return bean;
+        }
+        ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.addInterface(HibernateMascotaService.class);
+        proxyFactory.addAdvice(interceptor);
+        return proxyFactory.getProxy();
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+}
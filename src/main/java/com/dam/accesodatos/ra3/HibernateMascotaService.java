@@ -2,11 +2,18 @@ package com.dam.accesodatos.ra3;
 
 import com.dam.accesodatos.model.Mascota;
 import com.dam.accesodatos.model.MascotaCreateDto;
+import com.dam.accesodatos.model.MascotaLookup;
+import com.dam.accesodatos.model.MascotaPage;
+import com.dam.accesodatos.model.MascotaPatch;
 import com.dam.accesodatos.model.MascotaUpdateDto;
 import com.dam.accesodatos.model.MascotaQueryDto;
+import com.dam.accesodatos.model.MascotaStats;
+import com.dam.accesodatos.model.MascotaView;
+import com.dam.accesodatos.model.TransferResult;
 import org.springframework.ai.mcp.server.annotation.Tool;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface HibernateMascotaService {
 
@@ -22,30 +29,112 @@ public interface HibernateMascotaService {
           description = "Busca una mascota por su número de chip usando EntityManager.find()")
     Mascota findMascotaByNumChip(Integer id);
 
+    /**
+     * Variantes con modo de persistencia explícito (null = el configurado en
+     * pawner.persistence.mode). Con STATELESS se usa una StatelessSession:
+     * sin contexto de persistencia en lecturas e INSERT directos en escrituras.
+     */
+    Mascota findMascotaByNumChip(Integer id, PersistenceMode mode);
+
+    @Tool(name = "find_mascotas_by_ids",
+          description = "Busca muchas mascotas por número de chip de una vez con multiLoad de Hibernate (contexto de persistencia, caché de segundo nivel y consultas IN por bloques); devuelve el orden de entrada y los chips que no existen")
+    MascotaLookup findMascotasByIds(List<Integer> numChips);
+
     @Tool(name = "update_mascota",
           description = "Actualiza una mascota existente usando EntityManager.merge() y @Transactional")
+    @RetryOnConflict
     Mascota updateMascota(Integer id, MascotaUpdateDto dto);
 
+    @Tool(name = "patch_mascota",
+          description = "Actualiza solo los campos no null de una mascota con un UPDATE dinámico, sin leerla antes")
+    @RetryOnConflict
+    Mascota patchMascota(Integer numChip, MascotaUpdateDto dto);
+
+    @Tool(name = "patch_mascotas",
+          description = "Aplica muchos cambios parciales en una transacción con UPDATE dinámicos y batching JDBC")
+    @RetryOnConflict
+    TransferResult patchMascotas(List<MascotaPatch> patches);
+
     @Tool(name = "delete_mascota",
           description = "Elimina una mascota usando EntityManager.remove() y @Transactional")
     boolean deleteMascota(Integer id);
 
-    @Tool(name = "find_all_mascotas",
-          description = "Obtiene todas las mascotas usando JPA Repository.findAll()")
+    @Tool(name = "delete_mascotas",
+          description = "Elimina varias mascotas por lista de numChips o por filtro (nombre, tipoMascota, sexo) con DELETE JPQL masivos en bloques IN; devuelve las filas borradas")
+    int deleteMascotas(List<Integer> numChips, MascotaQueryDto filter);
+
     List<Mascota> findAll();
 
-    @Tool(name = "find_mascotas_by_tipo",
-          description = "Busca mascotas por tipo usando JPQL")
+    @Tool(name = "find_all_mascotas",
+          description = "Obtiene las mascotas paginadas por cursor (keyset sobre num_chip) usando una proyección JPQL")
+    MascotaPage<MascotaView> findAllPage(String cursor, Integer limit);
+
+    MascotaPage<MascotaView> findAllPage(String cursor, Integer limit, PersistenceMode mode);
+
     List<Mascota> findMascotasByTipo(String tipo);
 
-    @Tool(name = "search_mascotas",
-          description = "Busca mascotas con filtros dinámicos usando JPQL")
+    @Tool(name = "find_mascotas_by_tipo",
+          description = "Busca mascotas por tipo usando una proyección JPQL, paginadas por cursor")
+    MascotaPage<MascotaView> findMascotasByTipoPage(String tipo, String cursor, Integer limit);
+
+    MascotaPage<MascotaView> findMascotasByTipoPage(String tipo, String cursor, Integer limit, PersistenceMode mode);
+
+    /**
+     * Recorre las mascotas (todas, o solo las de un tipo si tipo != null) con un
+     * cursor JDBC y entrega cada una al consumidor sin construir ninguna lista.
+     * Las filas son proyecciones MascotaView, no entidades gestionadas.
+     * Devuelve el número de filas entregadas.
+     */
+    @HoldsConnection
+    long streamMascotas(String tipo, Consumer<MascotaView> consumer);
+
+    /**
+     * Entidades que cumplen los filtros. Sin limit ni offset en el DTO
+     * devuelve todas las coincidencias; con alguno de los dos, esa página por
+     * offset (limit por defecto 10, máximo 500).
+     */
     List<Mascota> searchMascotas(MascotaQueryDto query);
 
+    @Tool(name = "search_mascotas",
+          description = "Busca mascotas con filtros dinámicos usando una proyección JPQL. Devuelve siempre una página (limit por defecto 10, máximo 500) con nextCursor y hasMore: si hasMore es true hay más coincidencias; sin cursor se respeta offset")
+    MascotaPage<MascotaView> searchMascotasPage(MascotaQueryDto query);
+
+    MascotaPage<MascotaView> searchMascotasPage(MascotaQueryDto query, PersistenceMode mode);
+
+    @Tool(name = "search_mascotas_by_nombre",
+          description = "Busca mascotas cuyo nombre contiene un texto (sin distinguir mayúsculas) con un índice de trigramas en memoria")
+    List<MascotaView> searchMascotasByNombre(String nombre, Integer limit);
+
+    @Tool(name = "fuzzy_search_mascotas",
+          description = "Busca las mascotas con el nombre más parecido (Levenshtein con BK-tree y clave fonética) para nombres mal escritos")
+    List<MascotaView> fuzzySearchMascotas(String nombre, Integer limit);
+
+    @Tool(name = "analyze_mascotas",
+          description = "Recuento y edad mínima, máxima y media de las mascotas que cumplen un filtro, agrupadas por tipoMascota y/o sexo, sobre un snapshot columnar en memoria")
+    List<MascotaStats> analyzeMascotas(MascotaQueryDto filter, String groupBy);
+
+    @Tool(name = "filter_mascotas",
+          description = "Busca mascotas por nombre, tipoMascota y sexo exactos resolviendo el filtro en el snapshot columnar en memoria y cargando solo las coincidencias por clave primaria. Página por cursor (limit por defecto 10, máximo 500)")
+    MascotaPage<MascotaView> filterMascotas(MascotaQueryDto filter);
+
+    @Tool(name = "mascota_stats",
+          description = "Recuento y edad mínima, máxima y media agrupados por tipoMascota y/o sexo con una única consulta GROUP BY (opcionalmente desde una caché con TTL corto)")
+    List<MascotaStats> mascotaStats(String groupBy, Boolean cached);
+
     @Tool(name = "transfer_data",
           description = "Inserta múltiples mascotas en una transacción usando @Transactional")
     boolean transferData(List<Mascota> mascotas);
 
+    @Tool(name = "transfer_data_batched",
+          description = "Inserta múltiples mascotas en una transacción por bloques flush/clear alineados con hibernate.jdbc.batch_size")
+    TransferResult transferDataBatched(List<Mascota> mascotas, Integer chunkSize);
+
+    TransferResult transferDataBatched(List<Mascota> mascotas, Integer chunkSize, PersistenceMode mode);
+
+    @Tool(name = "upsert_mascotas",
+          description = "Inserta o actualiza mascotas en lote con MERGE INTO ... USING ... ON num_chip (suma 1 a version al actualizar) y batches JDBC")
+    TransferResult upsertMascotas(List<Mascota> mascotas);
+
     @Tool(name = "execute_count_by_tipo",
           description = "Ejecuta consulta COUNT usando JPQL")
     long executeCountByTipo(String tipo);
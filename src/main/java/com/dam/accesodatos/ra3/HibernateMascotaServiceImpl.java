@@ -1,17 +1,48 @@
 package com.dam.accesodatos.ra3;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.jpa.HibernateHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.dam.accesodatos.model.Mascota;
 import com.dam.accesodatos.model.MascotaCreateDto;
+import com.dam.accesodatos.model.MascotaLookup;
+import com.dam.accesodatos.model.MascotaPage;
+import com.dam.accesodatos.model.MascotaPatch;
 import com.dam.accesodatos.model.MascotaQueryDto;
+import com.dam.accesodatos.model.MascotaStats;
 import com.dam.accesodatos.model.MascotaUpdateDto;
+import com.dam.accesodatos.model.MascotaView;
+import com.dam.accesodatos.model.TransferResult;
 import com.dam.accesodatos.repository.MascotaRepository;
 
+import jakarta.persistence.Cache;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.Query;
@@ -44,12 +75,88 @@ import jakarta.persistence.TypedQuery;
 @Transactional(readOnly = true) // Transacciones de solo lectura por defecto
 public class HibernateMascotaServiceImpl implements HibernateMascotaService {
 
+    private static final Logger logger = LoggerFactory.getLogger(HibernateMascotaServiceImpl.class);
+
     @PersistenceContext
     private EntityManager entityManager;
 
     @Autowired
     private MascotaRepository mascotaRepository;
 
+    // Contadores por tipo en memoria (executeCountByTipo sin consultar H2)
+    @Autowired
+    private MascotaTipoCounters tipoCounters;
+
+    // Índice de trigramas sobre nombre (búsqueda por subcadena sin LIKE '%x%')
+    @Autowired
+    private MascotaNombreIndex nombreIndex;
+
+    // BK-tree + clave fonética sobre nombre (búsqueda aproximada)
+    @Autowired
+    private MascotaFuzzyIndex fuzzyIndex;
+
+    // Copia columnar en memoria para consultas analíticas (analyze_mascotas)
+    @Autowired
+    private MascotaColumnarSnapshot columnarSnapshot;
+
+    // Caché con TTL de mascota_stats
+    @Autowired
+    private MascotaStatsCache statsCache;
+
+    // Versión de los datos para las ETag de los listados (sube en cada commit con escrituras)
+    @Autowired
+    private MascotaDataVersion dataVersion;
+
+    // StatelessSession para el modo PersistenceMode.STATELESS
+    @Autowired
+    private MascotaStatelessOperations statelessOperations;
+
+    // Modo por defecto de lecturas y transferData cuando la llamada no indica ninguno
+    @Value("${pawner.persistence.mode:stateful}")
+    private PersistenceMode persistenceMode = PersistenceMode.STATEFUL;
+
+    // Filas que el driver trae por viaje al recorrer resultados grandes (streaming)
+    @Value("${pawner.stream.fetch-size:500}")
+    private int streamFetchSize = 500;
+
+    // Mismo valor que hibernate.jdbc.batch_size: los bloques de transferData se alinean con él
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:20}")
+    private int jdbcBatchSize = 20;
+
+    // Sentencias MERGE por batch JDBC en upsertMascotas
+    @Value("${pawner.upsert.batch-size:500}")
+    private int upsertBatchSize = 500;
+
+    // Chips por lista IN en los DELETE masivos de deleteMascotas
+    @Value("${pawner.delete.batch-size:500}")
+    private int deleteBatchSize = 500;
+
+    // Sentencias UPDATE por batch JDBC en patchMascotas
+    @Value("${pawner.patch.batch-size:500}")
+    private int patchBatchSize = 500;
+
+    // Chips por consulta IN en las cargas múltiples por clave primaria (multiLoad)
+    @Value("${pawner.multiget.batch-size:500}")
+    private int multiGetBatchSize = 500;
+
+    // Chips modificados con JDBC a partir de los cuales se vacía la región de caché entera
+    @Value("${pawner.cache.evict-all-threshold:500}")
+    private int evictAllThreshold = 500;
+
+    // Chips como máximo en una llamada a find_mascotas_by_ids
+    @Value("${pawner.multiget.max-ids:10000}")
+    private int multiGetMaxIds = 10000;
+
+    // MERGE ... USING en lugar de MERGE ... KEY: al actualizar hay que sumar 1 a version (@Version)
+    private static final String UPSERT_SQL =
+            "MERGE INTO mascotas m USING (VALUES (CAST(? AS INT), CAST(? AS VARCHAR(50)), CAST(? AS VARCHAR(50)), "
+                    + "CAST(? AS INT), CAST(? AS VARCHAR(50)), CAST(? AS VARCHAR(255)))) "
+                    + "AS s (num_chip, nombre, tipo_mascota, edad, sexo, otros_detalles) ON m.num_chip = s.num_chip "
+                    + "WHEN MATCHED THEN UPDATE SET nombre = s.nombre, tipo_mascota = s.tipo_mascota, edad = s.edad, "
+                    + "sexo = s.sexo, otros_detalles = s.otros_detalles, version = m.version + 1 "
+                    + "WHEN NOT MATCHED THEN INSERT (num_chip, nombre, tipo_mascota, edad, sexo, otros_detalles, version) "
+                    + "VALUES (s.num_chip, s.nombre, s.tipo_mascota, s.edad, s.sexo, s.otros_detalles, 0)";
+
     // ========== CE3.a: Configuración y Conexión ORM ==========
 
     /**
@@ -109,6 +216,11 @@ public class HibernateMascotaServiceImpl implements HibernateMascotaService {
         // INSERT INTO mascota (numChip, nombre, tipoMascota, edad, sexo, otrosDetalles)
         // VALUES (?, ?, ?, ?, ?, ?)
         entityManager.persist(mascota);
+        tipoCounters.add(mascota.getTipoMascota(), 1);
+        nombreIndex.put(mascota.getNumChip(), mascota.getNombre());
+        fuzzyIndex.put(mascota.getNumChip(), mascota.getNombre());
+        columnarSnapshot.put(mascota);
+        dataVersion.markChanged();
 
         // Al finalizar el método, Spring hace commit automáticamente
         // Hibernate ejecuta el INSERT y setea el ID generado
@@ -128,12 +240,57 @@ public class HibernateMascotaServiceImpl implements HibernateMascotaService {
      */
     @Override
     public Mascota findMascotaByNumChip(Integer numChip) {
+        return findMascotaByNumChip(numChip, null);
+    }
+
+    @Override
+    public Mascota findMascotaByNumChip(Integer numChip, PersistenceMode mode) {
+        if (resolveMode(mode) == PersistenceMode.STATELESS) {
+            // get() de StatelessSession: SELECT directo, la mascota no queda gestionada
+            return statelessOperations.execute(session -> session.get(Mascota.class, numChip));
+        }
+
         // find() es la forma más directa de buscar por ID
         // Hibernate genera: SELECT ... FROM users WHERE id = ?
         // y mapea automáticamente las columnas a los atributos de User        
         return entityManager.find(Mascota.class, numChip);
     }
 
+    /**
+     * Muchas mascotas por número de chip en una sola llamada.
+     *
+     * Sustituye a un find_mascota_by_id (petición HTTP + SELECT) por chip:
+     * multiLoad() resuelve primero los chips que ya están en el contexto de
+     * persistencia o en la caché de segundo nivel, y el resto los pide en
+     * bloques WHERE num_chip IN (...) de pawner.multiget.batch-size chips.
+     * 10.000 chips son unas pocas consultas en lugar de 10.000.
+     *
+     * El resultado mantiene el orden de la entrada, con null (y el chip en
+     * missing) donde no existe la mascota.
+     */
+    @Override
+    public MascotaLookup findMascotasByIds(List<Integer> numChips) {
+        if (numChips == null || numChips.isEmpty()) {
+            return new MascotaLookup(List.of(), List.of());
+        }
+        if (numChips.size() > multiGetMaxIds) {
+            throw new IllegalArgumentException("Como máximo " + multiGetMaxIds + " chips por llamada, recibidos "
+                    + numChips.size());
+        }
+        if (numChips.contains(null)) {
+            throw new IllegalArgumentException("La lista de chips contiene valores null");
+        }
+
+        List<Mascota> loaded = multiLoad(numChips);
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < loaded.size(); i++) {
+            if (loaded.get(i) == null) {
+                missing.add(numChips.get(i));
+            }
+        }
+        return new MascotaLookup(loaded, missing);
+    }
+
     /**
      * ✅ EJEMPLO IMPLEMENTADO 4/6: UPDATE con merge()
      *
@@ -151,22 +308,272 @@ public class HibernateMascotaServiceImpl implements HibernateMascotaService {
     @Override
     @Transactional  // ← Modifica BD
     public Mascota updateMascota(Integer numChip, MascotaUpdateDto dto) {
-        // 1. Buscar entidad existente
-        Mascota existing = findMascotaByNumChip(numChip);
+        // 1. Buscar entidad existente (siempre gestionada: merge() necesita el contexto de persistencia)
+        Mascota existing = entityManager.find(Mascota.class, numChip);
         if (existing == null) {
             throw new RuntimeException("No se encontró mascota con número de chip " + numChip);
         }
 
         // 2. Aplicar cambios del DTO
+        String tipoAnterior = existing.getTipoMascota();
         dto.applyTo(existing);
+        if (!Objects.equals(tipoAnterior, existing.getTipoMascota())) {
+            tipoCounters.add(tipoAnterior, -1);
+            tipoCounters.add(existing.getTipoMascota(), 1);
+        }
+        nombreIndex.put(numChip, existing.getNombre());
+        fuzzyIndex.put(numChip, existing.getNombre());
+        columnarSnapshot.put(existing);
+        dataVersion.markChanged();
 
         // 3. merge() actualiza la entidad
         // Hibernate detecta qué campos cambiaron y genera UPDATE solo de esos campos
+        // (con "WHERE version = ?": si otro la cambió antes del commit, OptimisticRetry repite la llamada)
         return entityManager.merge(existing);
 
         // Al finalizar, Spring hace commit e Hibernate ejecuta el UPDATE
     }
 
+    /**
+     * Actualización parcial sin leer antes la entidad.
+     *
+     * updateMascota cuesta un SELECT (find) más un UPDATE de la fila entera.
+     * Aquí se genera "UPDATE mascotas SET ... WHERE num_chip = ?" solo con los
+     * campos no null del DTO, envuelto en "SELECT ... FROM OLD TABLE (...)"
+     * de H2: la misma sentencia devuelve la fila tal como estaba, que es lo
+     * que necesitan los contadores por tipo y los índices en memoria. Un
+     * único viaje a la BD. La sentencia suma 1 a version, así que un
+     * updateMascota concurrente sobre la misma fila detecta el cambio.
+     *
+     * Como en upsertMascotas, el cambio va por JDBC directo: se hace flush
+     * antes, clear() del contexto de persistencia después y se desaloja el
+     * chip de la caché de segundo nivel.
+     */
+    @Override
+    @Transactional
+    public Mascota patchMascota(Integer numChip, MascotaUpdateDto dto) {
+        String updateSql = patchSql(dto, false);
+        if (updateSql == null) {
+            throw new IllegalArgumentException("El patch no cambia ningún campo de la mascota " + numChip);
+        }
+
+        entityManager.flush();
+        String sql = "SELECT num_chip, nombre, tipo_mascota, edad, sexo, otros_detalles, version FROM OLD TABLE ("
+                + updateSql + ")";
+        Mascota mascota = entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                bindPatch(statement, dto, numChip, null);
+                try (ResultSet rs = statement.executeQuery()) {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    Mascota anterior = new Mascota(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getInt(4),
+                            rs.getString(5), rs.getString(6));
+                    anterior.setVersion(rs.getLong(7));
+                    return anterior;
+                }
+            }
+        });
+        if (mascota == null) {
+            throw new RuntimeException("No se encontró mascota con número de chip " + numChip);
+        }
+
+        String tipoAnterior = mascota.getTipoMascota();
+        dto.applyTo(mascota);
+        mascota.setVersion(mascota.getVersion() + 1);
+        indexPatched(tipoAnterior, mascota);
+        dataVersion.markChanged();
+
+        afterJdbcWrite(List.of(numChip));
+        return mascota;
+    }
+
+    /**
+     * Muchos patch en una transacción con batching JDBC.
+     *
+     * Los patch de un mismo chip se combinan en uno (gana el último valor de
+     * cada campo) y se agrupan por forma de la sentencia: todos los que
+     * cambian, por ejemplo, solo tipoMascota comparten "UPDATE mascotas SET
+     * tipo_mascota = ? WHERE num_chip = ?" y van en batches de
+     * pawner.patch.batch-size con addBatch()/executeBatch().
+     *
+     * Para mantener contadores e índices se leen antes las filas afectadas
+     * como proyección (una consulta IN por bloque, sin entidades); los chips
+     * que no existen no generan UPDATE. Cada UPDATE lleva además
+     * "AND version = ?" con la versión leída: si otra transacción cambió la
+     * fila entretanto, se lanza ObjectOptimisticLockingFailureException, se
+     * hace rollback y OptimisticRetry repite la llamada entera.
+     */
+    @Override
+    @Transactional
+    public TransferResult patchMascotas(List<MascotaPatch> patches) {
+        Map<Integer, MascotaPatch> porChip = new LinkedHashMap<>();
+        for (MascotaPatch patch : patches) {
+            if (patch.getNumChip() == null || patchSql(patch, false) == null) {
+                throw new IllegalArgumentException("Patch sin numChip o sin campos que cambiar: " + patch);
+            }
+            MascotaPatch combinado = porChip.computeIfAbsent(patch.getNumChip(),
+                    chip -> new MascotaPatch(chip, null, null, null, null, null));
+            mergePatch(combinado, patch);
+        }
+
+        dataVersion.markChanged();
+        entityManager.flush();
+
+        Map<Integer, Mascota> actuales = findMascotasByNumChip(new ArrayList<>(porChip.keySet()));
+        Map<String, List<VersionedPatch>> porSentencia = new LinkedHashMap<>();
+        for (MascotaPatch patch : porChip.values()) {
+            Mascota mascota = actuales.get(patch.getNumChip());
+            if (mascota == null) {
+                continue;
+            }
+            long versionLeida = mascota.getVersion();
+            String tipoAnterior = mascota.getTipoMascota();
+            patch.applyTo(mascota);
+            indexPatched(tipoAnterior, mascota);
+            porSentencia.computeIfAbsent(patchSql(patch, true), sql -> new ArrayList<>())
+                    .add(new VersionedPatch(patch, versionLeida));
+        }
+
+        List<Long> chunkMillis = new ArrayList<>();
+        long start = System.nanoTime();
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            for (Map.Entry<String, List<VersionedPatch>> entry : porSentencia.entrySet()) {
+                List<VersionedPatch> grupo = entry.getValue();
+                try (PreparedStatement statement = connection.prepareStatement(entry.getKey())) {
+                    long chunkStart = System.nanoTime();
+                    int from = 0;
+                    for (int i = 0; i < grupo.size(); i++) {
+                        VersionedPatch versioned = grupo.get(i);
+                        bindPatch(statement, versioned.patch(), versioned.patch().getNumChip(), versioned.version());
+                        statement.addBatch();
+                        if (i + 1 - from == patchBatchSize || i + 1 == grupo.size()) {
+                            checkPatched(statement.executeBatch(), grupo.subList(from, i + 1));
+                            long now = System.nanoTime();
+                            chunkMillis.add(TimeUnit.NANOSECONDS.toMillis(now - chunkStart));
+                            chunkStart = now;
+                            from = i + 1;
+                        }
+                    }
+                }
+            }
+        });
+
+        afterJdbcWrite(new ArrayList<>(actuales.keySet()));
+
+        long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new TransferResult(actuales.size(), chunkMillis.size(), patchBatchSize, chunkMillis, totalMillis);
+    }
+
+    private record VersionedPatch(MascotaPatch patch, long version) {
+    }
+
+    /**
+     * Un UPDATE con versión que no ha cambiado ninguna fila: otra transacción
+     * modificó (o borró) la mascota después de leerla.
+     */
+    private static void checkPatched(int[] counts, List<VersionedPatch> enviados) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                throw new ObjectOptimisticLockingFailureException(Mascota.class, enviados.get(i).patch().getNumChip());
+            }
+        }
+    }
+
+    /**
+     * "UPDATE mascotas SET ..., version = version + 1 WHERE num_chip = ?" con
+     * los campos no null del DTO, siempre en el mismo orden; con checkVersion
+     * se añade "AND version = ?". null si no cambia ningún campo.
+     */
+    private static String patchSql(MascotaUpdateDto dto, boolean checkVersion) {
+        StringJoiner set = new StringJoiner(", ");
+        if (dto.getNombre() != null) {
+            set.add("nombre = ?");
+        }
+        if (dto.getTipoMascota() != null) {
+            set.add("tipo_mascota = ?");
+        }
+        if (dto.getEdad() != null) {
+            set.add("edad = ?");
+        }
+        if (dto.getSexo() != null) {
+            set.add("sexo = ?");
+        }
+        if (dto.getOtrosDetalles() != null) {
+            set.add("otros_detalles = ?");
+        }
+        if (set.length() == 0) {
+            return null;
+        }
+        return "UPDATE mascotas SET " + set + ", version = version + 1 WHERE num_chip = ?"
+                + (checkVersion ? " AND version = ?" : "");
+    }
+
+    private static void bindPatch(PreparedStatement statement, MascotaUpdateDto dto, int numChip, Long version)
+            throws SQLException {
+        int i = 1;
+        if (dto.getNombre() != null) {
+            statement.setString(i++, dto.getNombre());
+        }
+        if (dto.getTipoMascota() != null) {
+            statement.setString(i++, dto.getTipoMascota());
+        }
+        if (dto.getEdad() != null) {
+            statement.setInt(i++, dto.getEdad());
+        }
+        if (dto.getSexo() != null) {
+            statement.setString(i++, dto.getSexo());
+        }
+        if (dto.getOtrosDetalles() != null) {
+            statement.setString(i++, dto.getOtrosDetalles());
+        }
+        statement.setInt(i++, numChip);
+        if (version != null) {
+            statement.setLong(i, version);
+        }
+    }
+
+    private static void mergePatch(MascotaPatch target, MascotaUpdateDto patch) {
+        if (patch.getNombre() != null) target.setNombre(patch.getNombre());
+        if (patch.getTipoMascota() != null) target.setTipoMascota(patch.getTipoMascota());
+        if (patch.getEdad() != null) target.setEdad(patch.getEdad());
+        if (patch.getSexo() != null) target.setSexo(patch.getSexo());
+        if (patch.getOtrosDetalles() != null) target.setOtrosDetalles(patch.getOtrosDetalles());
+    }
+
+    private void indexPatched(String tipoAnterior, Mascota mascota) {
+        if (!Objects.equals(tipoAnterior, mascota.getTipoMascota())) {
+            tipoCounters.add(tipoAnterior, -1);
+            tipoCounters.add(mascota.getTipoMascota(), 1);
+        }
+        nombreIndex.put(mascota.getNumChip(), mascota.getNombre());
+        fuzzyIndex.put(mascota.getNumChip(), mascota.getNombre());
+        columnarSnapshot.put(mascota);
+    }
+
+    /**
+     * Filas actuales de los chips indicados como proyección (sin entidades
+     * gestionadas), en bloques IN de patchBatchSize chips.
+     */
+    private Map<Integer, Mascota> findMascotasByNumChip(List<Integer> chips) {
+        Map<Integer, Mascota> mascotas = new HashMap<>();
+        for (int from = 0; from < chips.size(); from += patchBatchSize) {
+            List<Integer> bloque = chips.subList(from, Math.min(chips.size(), from + patchBatchSize));
+            List<Object[]> rows = entityManager.createQuery(
+                    "SELECT m.numChip, m.nombre, m.tipoMascota, m.edad, m.sexo, m.otrosDetalles, m.version "
+                            + "FROM Mascota m WHERE m.numChip IN :chips", Object[].class)
+                    .setParameter("chips", bloque)
+                    .getResultList();
+            for (Object[] row : rows) {
+                Mascota mascota = new Mascota((Integer) row[0], (String) row[1], (String) row[2], (Integer) row[3],
+                        (String) row[4], (String) row[5]);
+                mascota.setVersion((Long) row[6]);
+                mascotas.put(mascota.getNumChip(), mascota);
+            }
+        }
+        return mascotas;
+    }
+
     /*
      * 🚨 PARA PRESENTAR 🚨
      */
@@ -193,15 +600,127 @@ public class HibernateMascotaServiceImpl implements HibernateMascotaService {
          - RA3: entityManager.remove(mascota)
         */
 
-    //  Mascota mascota = entityManager.find(Mascota.class, numChip);
-        Mascota mascota = findMascotaByNumChip(numChip);
+        // entityManager.find() y no findMascotaByNumChip(): remove() necesita
+        // la entidad gestionada aunque el modo configurado sea STATELESS
+        Mascota mascota = entityManager.find(Mascota.class, numChip);
         if (mascota == null) {
             return false;
         }
         entityManager.remove(mascota);
+        tipoCounters.add(mascota.getTipoMascota(), -1);
+        nombreIndex.remove(numChip);
+        fuzzyIndex.remove(numChip);
+        columnarSnapshot.remove(numChip);
+        dataVersion.markChanged();
         return true;
     }
 
+    /**
+     * Borrado masivo: por lista de chips o por filtro (mismos campos exactos
+     * que searchMascotas), nunca los dos a la vez.
+     *
+     * deleteMascota hace find() + remove() por cada mascota: dos sentencias y
+     * una entidad cargada por fila. Aquí se borra con
+     * "DELETE FROM Mascota m WHERE m.numChip IN :chips" en bloques de
+     * pawner.delete.batch-size chips, sin cargar entidades:
+     * - Por chips: se lee (num_chip, tipo_mascota) de los chips indicados para
+     *   mantener contadores e índices.
+     * - Por filtro: un GROUP BY da cuántas filas de cada tipo se van a borrar
+     *   (contadores) y los chips se leen por bloques con la consulta
+     *   precompilada del filtro y el cursor (índices). Nunca se carga el
+     *   conjunto afectado entero.
+     *
+     * Un DELETE JPQL no pasa por el contexto de persistencia: antes se hace
+     * flush de lo pendiente y después clear(). Hibernate sí invalida la
+     * región de Mascota de la caché de segundo nivel al ejecutarlo.
+     *
+     * @return filas borradas
+     */
+    @Override
+    @Transactional
+    public int deleteMascotas(List<Integer> numChips, MascotaQueryDto filter) {
+        boolean byChips = numChips != null && !numChips.isEmpty();
+        boolean byFilter = filter != null
+                && (filter.getNombre() != null || filter.getTipoMascota() != null || filter.getSexo() != null);
+        if (byChips == byFilter) {
+            throw new IllegalArgumentException(
+                    "Indica numChips o un filtro con nombre, tipoMascota o sexo (solo uno de los dos)");
+        }
+
+        entityManager.flush();
+        int deleted = byChips ? deleteByChips(numChips) : deleteByFilter(filter);
+        entityManager.clear();
+        if (deleted > 0) {
+            dataVersion.markChanged();
+        }
+        return deleted;
+    }
+
+    private int deleteByChips(List<Integer> numChips) {
+        Map<Integer, String> tipos = findTiposByNumChip(numChips, deleteBatchSize);
+        List<Integer> chips = new ArrayList<>(tipos.keySet());
+        int deleted = 0;
+        for (int from = 0; from < chips.size(); from += deleteBatchSize) {
+            deleted += deleteChipBlock(chips.subList(from, Math.min(chips.size(), from + deleteBatchSize)));
+        }
+        tipos.values().forEach(tipo -> tipoCounters.add(tipo, -1));
+        return deleted;
+    }
+
+    private int deleteByFilter(MascotaQueryDto filter) {
+        TypedQuery<Object[]> countQuery =
+                entityManager.createNamedQuery(MascotaSearchQueries.countByTipoQueryName(filter), Object[].class);
+        bindSearchParameters(countQuery, filter, null);
+        List<Object[]> porTipo = countQuery.getResultList();
+        long expected = 0;
+        for (Object[] row : porTipo) {
+            expected += (Long) row[1];
+        }
+        if (expected == 0) {
+            return 0;
+        }
+
+        // Keyset: las filas de cada bloque se borran, el siguiente empieza tras el último chip
+        int deleted = 0;
+        Integer after = null;
+        while (true) {
+            TypedQuery<Integer> chipsQuery = entityManager.createNamedQuery(
+                    MascotaSearchQueries.chipQueryName(filter, after != null), Integer.class);
+            bindSearchParameters(chipsQuery, filter, after);
+            List<Integer> bloque = chipsQuery.setMaxResults(deleteBatchSize).getResultList();
+            if (bloque.isEmpty()) {
+                break;
+            }
+            deleted += deleteChipBlock(bloque);
+            after = bloque.get(bloque.size() - 1);
+            if (bloque.size() < deleteBatchSize) {
+                break;
+            }
+        }
+
+        for (Object[] row : porTipo) {
+            tipoCounters.add((String) row[0], -(Long) row[1]);
+        }
+        if (deleted != expected) {
+            // Otra transacción insertó o borró filas del filtro entre el GROUP BY y los DELETE
+            logger.warn("deleteMascotas: {} filas borradas pero el GROUP BY contó {}; "
+                    + "los contadores por tipo pueden desviarse hasta el siguiente rebuild()", deleted, expected);
+        }
+        return deleted;
+    }
+
+    private int deleteChipBlock(List<Integer> bloque) {
+        int deleted = entityManager.createQuery("DELETE FROM Mascota m WHERE m.numChip IN :chips")
+                .setParameter("chips", bloque)
+                .executeUpdate();
+        for (Integer chip : bloque) {
+            nombreIndex.remove(chip);
+            fuzzyIndex.remove(chip);
+            columnarSnapshot.remove(chip);
+        }
+        return deleted;
+    }
+
     /**
      * ✅ EJEMPLO IMPLEMENTADO 5/6: SELECT all con Repository
      *
@@ -250,6 +769,39 @@ public class HibernateMascotaServiceImpl implements HibernateMascotaService {
         return query.getResultList();
     }
 
+    /**
+     * Recorrido en streaming con ScrollableResults (getResultStream()).
+     *
+     * A diferencia de getResultList(), Hibernate no materializa el resultado:
+     * lee del ResultSet fila a fila (el driver trae fetch-size filas por viaje).
+     * Cada fila es una proyección MascotaView (expresión constructora), no una
+     * entidad: nada entra en el contexto de persistencia, así que la memoria
+     * es constante aunque la tabla tenga millones de filas y no hace falta
+     * vaciarlo con clear().
+     */
+    @Override
+    public long streamMascotas(String tipo, Consumer<MascotaView> consumer) {
+        String jpql = tipo == null
+                ? MascotaView.JPQL_SELECT + " FROM Mascota m ORDER BY m.numChip"
+                : MascotaView.JPQL_SELECT + " FROM Mascota m WHERE m.tipoMascota = :tipo ORDER BY m.numChip";
+
+        TypedQuery<MascotaView> query = entityManager.createQuery(jpql, MascotaView.class);
+        if (tipo != null) {
+            query.setParameter("tipo", tipo);
+        }
+        query.setHint(HibernateHints.HINT_FETCH_SIZE, streamFetchSize);
+
+        long count = 0;
+        try (Stream<MascotaView> rows = query.getResultStream()) {
+            Iterator<MascotaView> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                consumer.accept(iterator.next());
+                count++;
+            }
+        }
+        return count;
+    }
+
     /*
      * 🚨 PARA PRESENTAR 🚨
      */
@@ -288,17 +840,104 @@ public class HibernateMascotaServiceImpl implements HibernateMascotaService {
            VENTAJA vs RA2: Parámetros nombrados evitan SQL injection
         */
 
-        StringBuilder jpql = new StringBuilder("SELECT m FROM Mascota m WHERE 1=1");
-        if (queryDto.getNombre() != null){
-            jpql.append("AND m.nombre = :nombre");
+        TypedQuery<Mascota> query = buildSearchQuery(queryDto);
+
+        // Paginación por offset (listas pequeñas) solo si se pidió: sin limit ni
+        // offset se devuelven todas las coincidencias, como antes de paginar
+        if (queryDto.hasExplicitPaging()) {
+            query.setFirstResult(queryDto.getOffset() != null ? queryDto.getOffset() : 0);
+            query.setMaxResults(MascotaPage.normalizeLimit(queryDto.getLimit()));
         }
-        if (queryDto.getTipoMascota() != null) {
-            jpql.append(" AND m.tipoMascota = :tipo");
+        return query.getResultList();
+    }
+
+    /**
+     * Búsqueda paginada por cursor (keyset sobre num_chip).
+     *
+     * En vez de "OFFSET n" (la BD recorre y descarta n filas), se filtra por
+     * "num_chip > último chip devuelto" usando la clave primaria, así que una
+     * página profunda cuesta lo mismo que la primera.
+     *
+     * Se piden limit + 1 filas: si llega la fila extra, hay más páginas.
+     * Sin cursor se respeta offset, por compatibilidad con listas pequeñas.
+     *
+     * Devuelve proyecciones MascotaView en lugar de entidades: el controlador
+     * solo las serializa, así que no tiene sentido que Hibernate las gestione
+     * (entrada en el contexto de persistencia + snapshot para dirty checking).
+     */
+    @Override
+    public MascotaPage<MascotaView> searchMascotasPage(MascotaQueryDto queryDto) {
+        return searchMascotasPage(queryDto, null);
+    }
+
+    @Override
+    public MascotaPage<MascotaView> searchMascotasPage(MascotaQueryDto queryDto, PersistenceMode mode) {
+        Integer after = queryDto.getCursor() != null ? MascotaPage.decodeCursor(queryDto.getCursor()) : null;
+        int limit = MascotaPage.normalizeLimit(queryDto.getLimit());
+        String queryName = MascotaSearchQueries.viewQueryName(queryDto, after != null);
+
+        if (resolveMode(mode) == PersistenceMode.STATELESS) {
+            return statelessOperations.execute(session ->
+                    fetchPage(session.createNamedQuery(queryName, MascotaView.class), queryDto, after, limit));
         }
-        if (queryDto.getSexo() != null) {
-            jpql.append(" AND m.sexo = :sexo");
+        return fetchPage(entityManager.createNamedQuery(queryName, MascotaView.class), queryDto, after, limit);
+    }
+
+    @Override
+    public MascotaPage<MascotaView> findAllPage(String cursor, Integer limit) {
+        return findAllPage(cursor, limit, null);
+    }
+
+    @Override
+    public MascotaPage<MascotaView> findAllPage(String cursor, Integer limit, PersistenceMode mode) {
+        MascotaQueryDto queryDto = new MascotaQueryDto();
+        queryDto.setCursor(cursor);
+        queryDto.setLimit(limit);
+        return searchMascotasPage(queryDto, mode);
+    }
+
+    @Override
+    public MascotaPage<MascotaView> findMascotasByTipoPage(String tipo, String cursor, Integer limit) {
+        return findMascotasByTipoPage(tipo, cursor, limit, null);
+    }
+
+    @Override
+    public MascotaPage<MascotaView> findMascotasByTipoPage(String tipo, String cursor, Integer limit, PersistenceMode mode) {
+        MascotaQueryDto queryDto = new MascotaQueryDto();
+        queryDto.setTipoMascota(tipo);
+        queryDto.setCursor(cursor);
+        queryDto.setLimit(limit);
+        return searchMascotasPage(queryDto, mode);
+    }
+
+    private MascotaPage<MascotaView> fetchPage(TypedQuery<MascotaView> query, MascotaQueryDto queryDto,
+            Integer after, int limit) {
+        bindSearchParameters(query, queryDto, after);
+        if (after == null && queryDto.getOffset() != null && queryDto.getOffset() > 0) {
+            query.setFirstResult(queryDto.getOffset());
+        }
+        query.setMaxResults(limit + 1);
+        return toPage(query.getResultList(), limit);
+    }
+
+    /**
+     * Consulta de entidades para la búsqueda por offset.
+     *
+     * No se construye JPQL en cada llamada: se elige la consulta precompilada
+     * de la combinación de filtros presente (ver MascotaSearchQueries) y solo
+     * se enlazan sus parámetros.
+     */
+    private TypedQuery<Mascota> buildSearchQuery(MascotaQueryDto queryDto) {
+        String queryName = MascotaSearchQueries.queryName(queryDto);
+        TypedQuery<Mascota> query = entityManager.createNamedQuery(queryName, Mascota.class);
+        bindSearchParameters(query, queryDto, null);
+        return query;
+    }
+
+    private void bindSearchParameters(TypedQuery<?> query, MascotaQueryDto queryDto, Integer after) {
+        if (after != null) {
+            query.setParameter("after", after);
         }
-        TypedQuery<Mascota> query = entityManager.createQuery(jpql.toString(), Mascota.class);
         if (queryDto.getNombre() != null){
             query.setParameter("nombre", queryDto.getNombre());
         }
@@ -308,7 +947,201 @@ public class HibernateMascotaServiceImpl implements HibernateMascotaService {
         if (queryDto.getSexo() != null) {
             query.setParameter("sexo", queryDto.getSexo());
         }
-        return query.getResultList();
+    }
+
+    /**
+     * Mascotas cuyo nombre contiene el texto, sin distinguir mayúsculas.
+     *
+     * En lugar de LOWER(nombre) LIKE '%x%' (recorrido completo de la tabla),
+     * el índice de trigramas devuelve los chips que coinciden y solo esas
+     * filas se cargan por clave primaria, como proyecciones MascotaView.
+     */
+    @Override
+    public List<MascotaView> searchMascotasByNombre(String nombre, Integer limit) {
+        if (nombre == null || nombre.isEmpty()) {
+            return List.of();
+        }
+        int max = MascotaPage.normalizeLimit(limit);
+        if (!nombreIndex.isReady()) {
+            // Mientras se construye el índice: LIKE sobre la tabla, cortado en max filas
+            return entityManager.createQuery(MascotaView.JPQL_SELECT
+                            + " FROM Mascota m WHERE LOWER(m.nombre) LIKE LOWER(CONCAT('%', :nombre, '%'))"
+                            + " ORDER BY m.numChip", MascotaView.class)
+                    .setParameter("nombre", nombre)
+                    .setMaxResults(max)
+                    .getResultList();
+        }
+        return loadViewsByNumChip(nombreIndex.search(nombre, max));
+    }
+
+    /**
+     * Mascotas con el nombre más parecido al texto, para nombres mal escritos
+     * ("Cocco" encuentra "Coco"). Se resuelve en memoria con MascotaFuzzyIndex
+     * (BK-tree de Levenshtein + clave fonética) y solo se cargan por clave
+     * primaria, como MascotaView, las limit mascotas más cercanas, en orden de
+     * parecido.
+     */
+    @Override
+    public List<MascotaView> fuzzySearchMascotas(String nombre, Integer limit) {
+        if (nombre == null || nombre.isBlank()) {
+            return List.of();
+        }
+        if (!fuzzyIndex.isReady()) {
+            // Mientras se construye el índice: solo coincidencias por subcadena
+            return searchMascotasByNombre(nombre, limit);
+        }
+        return loadViewsByNumChip(fuzzyIndex.search(nombre, MascotaPage.normalizeLimit(limit)));
+    }
+
+    /**
+     * Recuento y edad mínima/máxima/media por grupo, sin cargar entidades: se
+     * recorre en paralelo el snapshot columnar (arrays de int en memoria).
+     */
+    @Override
+    public List<MascotaStats> analyzeMascotas(MascotaQueryDto filter, String groupBy) {
+        Set<String> fields = parseGroupBy(groupBy);
+        if (!columnarSnapshot.isReady()) {
+            throw new IllegalStateException("El snapshot columnar todavía se está cargando");
+        }
+        return columnarSnapshot.stats(filter, fields.contains("tipoMascota"), fields.contains("sexo"));
+    }
+
+    /**
+     * Página de mascotas que cumplen el filtro, resuelta en dos pasos: el
+     * snapshot columnar decide qué chips cumplen (comparando códigos int, sin
+     * consultar H2) y solo esos se cargan como MascotaView por clave primaria.
+     * Se pagina por cursor sobre numChip, como search_mascotas.
+     */
+    @Override
+    public MascotaPage<MascotaView> filterMascotas(MascotaQueryDto filter) {
+        if (!columnarSnapshot.isReady()) {
+            throw new IllegalStateException("El snapshot columnar todavía se está cargando");
+        }
+        MascotaQueryDto query = filter != null ? filter : new MascotaQueryDto();
+        Integer after = query.getCursor() != null ? MascotaPage.decodeCursor(query.getCursor()) : null;
+        int limit = MascotaPage.normalizeLimit(query.getLimit());
+        return toPage(loadViewsByNumChip(columnarSnapshot.filterChips(query, after, limit + 1)), limit);
+    }
+
+    /**
+     * Recuento y edad mínima/máxima/media agrupados por tipoMascota y/o sexo
+     * con UNA consulta GROUP BY, en lugar de un execute_count_by_tipo por
+     * tipo más find_all_mascotas para calcular las edades en el cliente.
+     * Con cached = true el resultado puede venir de MascotaStatsCache.
+     */
+    @Override
+    public List<MascotaStats> mascotaStats(String groupBy, Boolean cached) {
+        Set<String> fields = parseGroupBy(groupBy);
+        boolean byTipo = fields.contains("tipoMascota");
+        boolean bySexo = fields.contains("sexo");
+        if (Boolean.TRUE.equals(cached)) {
+            return statsCache.get(byTipo, bySexo, () -> queryStats(byTipo, bySexo));
+        }
+        return queryStats(byTipo, bySexo);
+    }
+
+    private List<MascotaStats> queryStats(boolean byTipo, boolean bySexo) {
+        // SELECT m.tipoMascota, m.sexo, COUNT(m), MIN(m.edad), MAX(m.edad), AVG(m.edad)
+        // FROM Mascota m GROUP BY m.tipoMascota, m.sexo ORDER BY m.tipoMascota, m.sexo
+        List<String> columns = new ArrayList<>();
+        if (byTipo) {
+            columns.add("m.tipoMascota");
+        }
+        if (bySexo) {
+            columns.add("m.sexo");
+        }
+        String groupColumns = String.join(", ", columns);
+        String jpql = "SELECT " + (columns.isEmpty() ? "" : groupColumns + ", ")
+                + "COUNT(m), MIN(m.edad), MAX(m.edad), AVG(m.edad) FROM Mascota m"
+                + (columns.isEmpty() ? "" : " GROUP BY " + groupColumns + " ORDER BY " + groupColumns);
+
+        List<Object[]> rows = entityManager.createQuery(jpql, Object[].class).getResultList();
+        List<MascotaStats> stats = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            int i = 0;
+            String tipo = byTipo ? (String) row[i++] : null;
+            String sexo = bySexo ? (String) row[i++] : null;
+            long count = ((Number) row[i++]).longValue();
+            Number min = (Number) row[i++];
+            Number max = (Number) row[i++];
+            Number avg = (Number) row[i];
+            stats.add(new MascotaStats(tipo, sexo, count,
+                    min != null ? min.intValue() : null,
+                    max != null ? max.intValue() : null,
+                    avg != null ? avg.doubleValue() : null));
+        }
+        return stats;
+    }
+
+    /**
+     * Campos de agrupación separados por comas: "tipoMascota", "sexo" o
+     * ambos. null o vacío = sin agrupar.
+     */
+    private static Set<String> parseGroupBy(String groupBy) {
+        Set<String> fields = new HashSet<>();
+        if (groupBy == null || groupBy.isBlank()) {
+            return fields;
+        }
+        for (String field : groupBy.split(",")) {
+            String name = field.trim();
+            if (!name.equals("tipoMascota") && !name.equals("sexo")) {
+                throw new IllegalArgumentException("Campo de agrupación no válido: " + name
+                        + " (admitidos: tipoMascota, sexo)");
+            }
+            fields.add(name);
+        }
+        return fields;
+    }
+
+    /**
+     * multiLoad() en el orden de los chips, con null para los que no existen.
+     * enableSessionCheck y CacheMode.NORMAL hacen explícito el orden de
+     * búsqueda: contexto de persistencia, caché de segundo nivel y BD.
+     */
+    private List<Mascota> multiLoad(List<Integer> chips) {
+        return entityManager.unwrap(Session.class)
+                .byMultipleIds(Mascota.class)
+                .enableSessionCheck(true)
+                .with(CacheMode.NORMAL)
+                .withBatchSize(multiGetBatchSize)
+                .enableOrderedReturn(true)
+                .multiLoad(chips);
+    }
+
+    /**
+     * Proyecciones MascotaView de los chips, en su orden y sin los que no
+     * existen, con una consulta WHERE num_chip IN (...) por cada bloque de
+     * multiGetBatchSize chips. No pasan por el contexto de persistencia.
+     */
+    private List<MascotaView> loadViewsByNumChip(List<Integer> chips) {
+        if (chips.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, MascotaView> byChip = new HashMap<>();
+        TypedQuery<MascotaView> query = entityManager.createQuery(
+                MascotaView.JPQL_SELECT + " FROM Mascota m WHERE m.numChip IN :chips", MascotaView.class);
+        for (int from = 0; from < chips.size(); from += multiGetBatchSize) {
+            List<Integer> block = chips.subList(from, Math.min(chips.size(), from + multiGetBatchSize));
+            query.setParameter("chips", block).getResultList()
+                    .forEach(view -> byChip.put(view.getNumChip(), view));
+        }
+        List<MascotaView> views = new ArrayList<>(byChip.size());
+        for (Integer chip : chips) {
+            MascotaView view = byChip.get(chip);
+            if (view != null) {
+                views.add(view);
+            }
+        }
+        return views;
+    }
+
+    private MascotaPage<MascotaView> toPage(List<MascotaView> rows, int limit) {
+        if (rows.size() <= limit) {
+            return new MascotaPage<>(rows, null, false);
+        }
+        List<MascotaView> page = new ArrayList<>(rows.subList(0, limit));
+        String nextCursor = MascotaPage.encodeCursor(page.get(page.size() - 1).getNumChip());
+        return new MascotaPage<>(page, nextCursor, true);
     }
 
     // ========== CE3.g: Transacciones ==========
@@ -345,10 +1178,251 @@ public class HibernateMascotaServiceImpl implements HibernateMascotaService {
         */
 
         // .persist() guarda la mascota en la base de datos
+        // (por bloques, ver transferDataBatched)
+        transferDataBatched(mascotas, null);
+        return true;
+    }
+
+    /**
+     * Carga masiva por bloques: persist() + flush()/clear() cada chunkSize mascotas.
+     *
+     * Con un único persist() por elemento y sin flush, todas las entidades
+     * quedan gestionadas (y se revisan en el dirty checking) hasta el commit.
+     * Vaciando el contexto en cada bloque:
+     * - flush() envía los INSERT del bloque agrupados en batches JDBC
+     *   (hibernate.jdbc.batch_size), en vez de acumularlos hasta el final
+     * - clear() libera las entidades ya escritas: memoria constante
+     *
+     * El bloque se redondea a un múltiplo de hibernate.jdbc.batch_size para que
+     * ningún flush deje un batch JDBC a medias. Todo sigue siendo UNA transacción:
+     * si falla cualquier bloque se hace rollback de todos.
+     */
+    @Override
+    @Transactional
+    public TransferResult transferDataBatched(List<Mascota> mascotas, Integer chunkSize) {
+        return transferDataBatched(mascotas, chunkSize, null);
+    }
+
+    @Override
+    @Transactional
+    public TransferResult transferDataBatched(List<Mascota> mascotas, Integer chunkSize, PersistenceMode mode) {
+        int chunk = alignToBatchSize(chunkSize);
+        dataVersion.markChanged();
+        if (resolveMode(mode) == PersistenceMode.STATELESS) {
+            return transferStateless(mascotas, chunk);
+        }
+        List<Long> chunkMillis = new ArrayList<>();
+
+        long start = System.nanoTime();
+        long chunkStart = start;
+        int pending = 0;
         for (Mascota mascota : mascotas) {
             entityManager.persist(mascota);
+            tipoCounters.add(mascota.getTipoMascota(), 1);
+            nombreIndex.put(mascota.getNumChip(), mascota.getNombre());
+            fuzzyIndex.put(mascota.getNumChip(), mascota.getNombre());
+            columnarSnapshot.put(mascota);
+            if (++pending == chunk) {
+                chunkStart = flushChunk(chunkStart, chunkMillis);
+                pending = 0;
+            }
         }
-        return true;
+        if (pending > 0) {
+            flushChunk(chunkStart, chunkMillis);
+        }
+
+        long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new TransferResult(mascotas.size(), chunkMillis.size(), chunk, chunkMillis, totalMillis);
+    }
+
+    /**
+     * transferData con StatelessSession: cada insert() es un INSERT inmediato,
+     * sin pasar por el contexto de persistencia, así que no hay nada que vaciar
+     * con flush()/clear(). Los bloques solo sirven para medir tiempos.
+     */
+    private TransferResult transferStateless(List<Mascota> mascotas, int chunk) {
+        // Los cambios pendientes del EntityManager deben llegar a la BD antes que los INSERT
+        entityManager.flush();
+
+        List<Long> chunkMillis = new ArrayList<>();
+        long start = System.nanoTime();
+        statelessOperations.execute(session -> {
+            long chunkStart = start;
+            int pending = 0;
+            for (Mascota mascota : mascotas) {
+                session.insert(mascota);
+                tipoCounters.add(mascota.getTipoMascota(), 1);
+                nombreIndex.put(mascota.getNumChip(), mascota.getNombre());
+                fuzzyIndex.put(mascota.getNumChip(), mascota.getNombre());
+                columnarSnapshot.put(mascota);
+                if (++pending == chunk) {
+                    long now = System.nanoTime();
+                    chunkMillis.add(TimeUnit.NANOSECONDS.toMillis(now - chunkStart));
+                    chunkStart = now;
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                chunkMillis.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - chunkStart));
+            }
+            return null;
+        });
+
+        long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new TransferResult(mascotas.size(), chunkMillis.size(), chunk, chunkMillis, totalMillis);
+    }
+
+    /**
+     * Upsert masivo con MERGE INTO ... USING ... ON m.num_chip = s.num_chip
+     * (UPSERT_SQL). Al actualizar suma 1 a version, como haría Hibernate con
+     * @Version; al insertar empieza en 0.
+     *
+     * transferData falla entera si algún chip ya existe, y updateMascota hace
+     * find() + merge() fila a fila (2 viajes a la BD por mascota). Aquí cada
+     * mascota es un MERGE (inserta si el chip no existe, actualiza si existe)
+     * y se envían upsertBatchSize sentencias por viaje con addBatch()/executeBatch().
+     *
+     * Se usa JDBC directo (Session.doWork) sobre la conexión de la transacción:
+     * si algo falla, rollback de todo igual que en transferData.
+     */
+    @Override
+    @Transactional
+    public TransferResult upsertMascotas(List<Mascota> mascotas) {
+        dataVersion.markChanged();
+
+        // Los cambios pendientes del contexto deben llegar a la BD antes que los MERGE
+        entityManager.flush();
+
+        // Tipo actual de los chips que ya existen: para ajustar los contadores por tipo
+        // (un MERGE que actualiza puede cambiar el tipo de la mascota)
+        Map<Integer, String> tipos = findTiposByNumChip(mascotas);
+        for (Mascota mascota : mascotas) {
+            String tipoAnterior = tipos.put(mascota.getNumChip(), mascota.getTipoMascota());
+            if (tipoAnterior != null) {
+                tipoCounters.add(tipoAnterior, -1);
+            }
+            tipoCounters.add(mascota.getTipoMascota(), 1);
+            nombreIndex.put(mascota.getNumChip(), mascota.getNombre());
+            fuzzyIndex.put(mascota.getNumChip(), mascota.getNombre());
+            columnarSnapshot.put(mascota);
+        }
+
+        List<Long> chunkMillis = new ArrayList<>();
+        long start = System.nanoTime();
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(UPSERT_SQL)) {
+                long chunkStart = System.nanoTime();
+                int pending = 0;
+                for (Mascota mascota : mascotas) {
+                    statement.setInt(1, mascota.getNumChip());
+                    statement.setString(2, mascota.getNombre());
+                    statement.setString(3, mascota.getTipoMascota());
+                    statement.setInt(4, mascota.getEdad());
+                    statement.setString(5, mascota.getSexo());
+                    statement.setString(6, mascota.getOtrosDetalles());
+                    statement.addBatch();
+                    if (++pending == upsertBatchSize) {
+                        statement.executeBatch();
+                        long now = System.nanoTime();
+                        chunkMillis.add(TimeUnit.NANOSECONDS.toMillis(now - chunkStart));
+                        chunkStart = now;
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    statement.executeBatch();
+                    chunkMillis.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - chunkStart));
+                }
+            }
+        });
+
+        afterJdbcWrite(mascotas.stream().map(Mascota::getNumChip).toList());
+
+        long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new TransferResult(mascotas.size(), chunkMillis.size(), upsertBatchSize, chunkMillis, totalMillis);
+    }
+
+    private Map<Integer, String> findTiposByNumChip(List<Mascota> mascotas) {
+        return findTiposByNumChip(mascotas.stream().map(Mascota::getNumChip).toList(), upsertBatchSize);
+    }
+
+    /**
+     * Tipo actual de los chips indicados que existen en la BD, consultado en
+     * bloques IN de blockSize chips (una consulta por bloque).
+     */
+    private Map<Integer, String> findTiposByNumChip(List<Integer> numChips, int blockSize) {
+        List<Integer> chips = numChips.stream().filter(Objects::nonNull).distinct().toList();
+        Map<Integer, String> tipos = new HashMap<>();
+        for (int from = 0; from < chips.size(); from += blockSize) {
+            List<Integer> bloque = chips.subList(from, Math.min(chips.size(), from + blockSize));
+            List<Object[]> rows = entityManager.createQuery(
+                    "SELECT m.numChip, m.tipoMascota FROM Mascota m WHERE m.numChip IN :chips", Object[].class)
+                    .setParameter("chips", bloque)
+                    .getResultList();
+            for (Object[] row : rows) {
+                tipos.put((Integer) row[0], (String) row[1]);
+            }
+        }
+        return tipos;
+    }
+
+    /**
+     * Las filas de estos chips han cambiado por SQL directo (MERGE, UPDATE):
+     * las entidades gestionadas pueden estar obsoletas, así que se vacía el
+     * contexto de persistencia y se desalojan de la caché de segundo nivel.
+     */
+    private void afterJdbcWrite(List<Integer> numChips) {
+        entityManager.clear();
+        evictFromSecondLevelCache(numChips);
+    }
+
+    /**
+     * Hibernate mantiene la caché de segundo nivel al día en persist/merge/remove,
+     * pero no se entera de los cambios hechos con JDBC directo (MERGE, UPDATE).
+     * Se desalojan esos chips ahora y otra vez al terminar la transacción, por
+     * si otra transacción los volvió a cargar con los valores antiguos mientras tanto.
+     * Con más de evictAllThreshold chips se vacía la región entera: es más
+     * barato que desalojarlos uno a uno.
+     */
+    private void evictFromSecondLevelCache(List<Integer> numChips) {
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        Runnable evict = () -> {
+            if (numChips.size() > evictAllThreshold) {
+                cache.evict(Mascota.class);
+            } else {
+                for (Integer numChip : numChips) {
+                    cache.evict(Mascota.class, numChip);
+                }
+            }
+        };
+        evict.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict.run();
+                }
+            });
+        }
+    }
+
+    private long flushChunk(long chunkStart, List<Long> chunkMillis) {
+        entityManager.flush();
+        entityManager.clear();
+        long now = System.nanoTime();
+        chunkMillis.add(TimeUnit.NANOSECONDS.toMillis(now - chunkStart));
+        return now;
+    }
+
+    private PersistenceMode resolveMode(PersistenceMode mode) {
+        return mode != null ? mode : persistenceMode;
+    }
+
+    private int alignToBatchSize(Integer chunkSize) {
+        if (chunkSize == null || chunkSize <= jdbcBatchSize) {
+            return jdbcBatchSize;
+        }
+        return ((chunkSize + jdbcBatchSize - 1) / jdbcBatchSize) * jdbcBatchSize;
     }
 
     /*
@@ -375,6 +1449,11 @@ public class HibernateMascotaServiceImpl implements HibernateMascotaService {
            - RA3: JPQL COUNT query directo (más simple)
         */
 
+        // Contadores en memoria: O(1) sin tocar H2 (ver MascotaTipoCounters)
+        if (tipoCounters.isReady()) {
+            return tipoCounters.count(tipo);
+        }
+
         String jpql = "SELECT COUNT(m) FROM Mascota m WHERE m.tipoMascota = :tipo";
         TypedQuery<Long> query = entityManager.createQuery(jpql, Long.class);
         query.setParameter("tipo", tipo);
@@ -0,0 +1,20 @@
+package com.dam.accesodatos.ra3;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marca los métodos de HibernateMascotaService que retienen la conexión
+ * mientras el cliente consume la respuesta (cursores en streaming).
+ *
+ * DbBulkhead les reserva solo una parte de sus permisos (max-streams): unos
+ * pocos clientes lentos no pueden dejar sin conexión al resto de llamadas.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface HoldsConnection {
+}
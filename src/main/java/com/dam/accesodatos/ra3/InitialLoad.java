@@ -0,0 +1,29 @@
+package com.dam.accesodatos.ra3;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Primera carga de las estructuras en memoria (MascotaTipoCounters,
+ * MascotaNombreIndex, MascotaFuzzyIndex, MascotaColumnarSnapshot).
+ *
+ * Cada una la llama desde afterSingletonsInstantiated(): al terminar de crear
+ * los singletons y antes de que el servidor web acepte peticiones, así que
+ * ninguna escritura puede confirmarse entre la consulta y la sustitución de
+ * la estructura. (Con ApplicationReadyEvent el servidor ya estaba atendiendo
+ * y los commits aplicados en ese hueco se perdían hasta el siguiente arranque.)
+ *
+ * rebuild() se llama directamente, sin pasar por el proxy de @Transactional:
+ * la transacción de solo lectura se abre aquí.
+ */
+final class InitialLoad {
+
+    private InitialLoad() {
+    }
+
+    static void run(PlatformTransactionManager transactionManager, Runnable rebuild) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        transaction.executeWithoutResult(status -> rebuild.run());
+    }
+}
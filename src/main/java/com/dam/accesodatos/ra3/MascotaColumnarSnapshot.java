@@ -0,0 +1,522 @@
+package com.dam.accesodatos.ra3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.dam.accesodatos.model.Mascota;
+import com.dam.accesodatos.model.MascotaQueryDto;
+import com.dam.accesodatos.model.MascotaStats;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Copia en memoria de la tabla mascotas organizada por COLUMNAS, para
+ * consultas analíticas (filtros + recuentos y estadísticas de edad) y para
+ * resolver qué chips cumplen un filtro sin consultar la BD.
+ *
+ * Con findAll() cada fila es un objeto Mascota (cabecera, referencias a
+ * Strings, entrada en el contexto de persistencia...) y recorrerlas es saltar
+ * por el heap. Aquí cada columna es un array de primitivos contiguo:
+ * - numChip y edad: int[]
+ * - tipoMascota, sexo y nombre: codificados con diccionario (cada valor
+ *   distinto recibe un código int y la columna guarda el código), de modo que
+ *   los filtros comparan ints en lugar de Strings.
+ * Un recorrido es leer arrays secuencialmente, y se reparte entre los hilos
+ * del ForkJoinPool común: cada tarea recorre un tramo de filas con sus propios
+ * acumuladores y al final se combinan.
+ *
+ * Se construye al arrancar, las escrituras del servicio llaman a
+ * put()/remove() y los cambios se aplican al hacer commit (ver
+ * PendingChanges); la propia transacción ya los ve.
+ * Los borrados dejan la fila marcada en deleted[]; cuando las filas borradas
+ * superan compact-ratio del total, el commit que lo provoca compacta las
+ * columnas (copia solo las vivas y rehace los diccionarios), así los
+ * recorridos no crecen con el histórico de borrados.
+ */
+@Component
+public class MascotaColumnarSnapshot implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(MascotaColumnarSnapshot.class);
+
+    // Filas por tarea hoja del fork-join: por debajo no compensa repartir
+    private static final int SCAN_THRESHOLD = 1 << 16;
+
+    // Código de "sin filtro" en Filter (los códigos de diccionario son >= 0)
+    private static final int ANY = -1;
+
+    // Fracción de filas borradas a partir de la cual se compactan las columnas
+    @Value("${pawner.columnar.compact-ratio:0.25}")
+    private double compactRatio = 0.25;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Un escritor (commit o rebuild) a la vez; los recorridos en paralelo
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Columns columns = new Columns(16);
+
+    private volatile boolean ready = false;
+
+    // chip -> fila nueva (null = borrado) de la transacción actual
+    private final PendingChanges<Integer, Row> pending = new PendingChanges<>(this::apply);
+
+    /**
+     * Recarga todas las columnas desde la BD con una proyección recorrida en
+     * streaming (sin entidades ni lista intermedia).
+     */
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        Columns fresh = new Columns(1024);
+        try (Stream<Object[]> rows = entityManager.createQuery(
+                "SELECT m.numChip, m.nombre, m.tipoMascota, m.edad, m.sexo FROM Mascota m", Object[].class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, 1000)
+                .getResultStream()) {
+            rows.forEach(row -> fresh.upsert((Integer) row[0],
+                    new Row((String) row[1], (String) row[2], row[3] != null ? (Integer) row[3] : 0, (String) row[4])));
+        }
+
+        lock.writeLock().lock();
+        try {
+            columns = fresh;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+        logger.info("Snapshot columnar reconstruido: {} mascotas, {} tipos, {} nombres distintos",
+                fresh.live, fresh.tipos.size(), fresh.nombres.size());
+    }
+
+    /**
+     * Primera carga, antes de que el servidor web acepte peticiones (ver InitialLoad).
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        InitialLoad.run(transactionManager, this::rebuild);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Registra el alta o modificación de una mascota. Con transacción activa
+     * se aplica en el commit; sin transacción, inmediatamente.
+     */
+    public void put(Mascota mascota) {
+        pending.record(mascota.getNumChip(),
+                new Row(mascota.getNombre(), mascota.getTipoMascota(), mascota.getEdad(), mascota.getSexo()));
+    }
+
+    /**
+     * Registra el borrado de una mascota.
+     */
+    public void remove(int numChip) {
+        pending.record(numChip, null);
+    }
+
+    /**
+     * Número de mascotas y edad mínima, máxima y media de las que cumplen el
+     * filtro (nombre, tipoMascota y sexo exactos, como searchMascotas),
+     * agrupadas por tipoMascota y/o sexo. Sin agrupar, devuelve un único
+     * elemento con el total.
+     */
+    public List<MascotaStats> stats(MascotaQueryDto filter, boolean byTipo, boolean bySexo) {
+        Map<Integer, Row> changes = pending.current();
+        Map<List<String>, Group> groups = new LinkedHashMap<>();
+
+        lock.readLock().lock();
+        try {
+            Columns c = columns;
+            Filter codes = c.filterFor(filter);
+            if (codes != null) {
+                BitSet skip = null;
+                if (changes != null) {
+                    // Filas con cambios pendientes: cuentan con sus valores nuevos (abajo)
+                    skip = new BitSet(c.size);
+                    for (Integer chip : changes.keySet()) {
+                        Integer row = c.rowByChip.get(chip);
+                        if (row != null) {
+                            skip.set(row);
+                        }
+                    }
+                }
+                int sexoSlots = bySexo ? c.sexos.size() : 1;
+                int slots = (byTipo ? c.tipos.size() : 1) * sexoSlots;
+                Group[] scanned = ForkJoinPool.commonPool().invoke(
+                        new ScanTask(c, codes, skip, byTipo, bySexo, sexoSlots, slots, 0, c.size));
+                for (int slot = 0; slot < slots; slot++) {
+                    if (scanned[slot].count > 0) {
+                        String tipo = byTipo ? c.tipos.value(slot / sexoSlots) : null;
+                        String sexo = bySexo ? c.sexos.value(slot % sexoSlots) : null;
+                        groups.computeIfAbsent(Arrays.asList(tipo, sexo), k -> new Group()).merge(scanned[slot]);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (changes != null) {
+            changes.values().forEach(row -> {
+                if (row != null && row.matches(filter)) {
+                    List<String> key = Arrays.asList(byTipo ? row.tipoMascota() : null, bySexo ? row.sexo() : null);
+                    groups.computeIfAbsent(key, k -> new Group()).add(row.edad());
+                }
+            });
+        }
+
+        if (!byTipo && !bySexo && groups.isEmpty()) {
+            return List.of(new MascotaStats(null, null, 0, null, null, null));
+        }
+        List<MascotaStats> result = new ArrayList<>(groups.size());
+        groups.forEach((key, group) -> result.add(group.toStats(key.get(0), key.get(1))));
+        result.sort(Comparator.comparing(MascotaStats::getTipoMascota, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(MascotaStats::getSexo, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return result;
+    }
+
+    /**
+     * Chips de las mascotas que cumplen el filtro (los mismos campos exactos
+     * que stats), en orden ascendente, mayores que after (cursor; null = desde
+     * el principio) y como mucho max. El recorrido es secuencial sobre las
+     * columnas de códigos; el orden sale de ordenar solo los chips que pasan
+     * el filtro.
+     */
+    public List<Integer> filterChips(MascotaQueryDto filter, Integer after, int max) {
+        Map<Integer, Row> changes = pending.current();
+        int floor = after != null ? after : Integer.MIN_VALUE;
+        int[] matches = new int[16];
+        int count = 0;
+
+        lock.readLock().lock();
+        try {
+            Columns c = columns;
+            Filter codes = c.filterFor(filter);
+            if (codes != null) {
+                int[] numChip = c.numChip;
+                int[] tipo = c.tipo;
+                int[] sexo = c.sexo;
+                int[] nombre = c.nombre;
+                boolean[] deleted = c.deleted;
+                for (int row = 0; row < c.size; row++) {
+                    if (deleted[row] || numChip[row] <= floor
+                            || (codes.nombre() != ANY && nombre[row] != codes.nombre())
+                            || (codes.tipo() != ANY && tipo[row] != codes.tipo())
+                            || (codes.sexo() != ANY && sexo[row] != codes.sexo())
+                            || (changes != null && changes.containsKey(numChip[row]))) {
+                        continue;
+                    }
+                    if (count == matches.length) {
+                        matches = Arrays.copyOf(matches, count * 2);
+                    }
+                    matches[count++] = numChip[row];
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (changes != null) {
+            // Filas con cambios pendientes: cuentan con sus valores nuevos
+            for (Map.Entry<Integer, Row> change : changes.entrySet()) {
+                Row row = change.getValue();
+                if (row != null && change.getKey() > floor && row.matches(filter)) {
+                    if (count == matches.length) {
+                        matches = Arrays.copyOf(matches, count * 2);
+                    }
+                    matches[count++] = change.getKey();
+                }
+            }
+        }
+
+        Arrays.sort(matches, 0, count);
+        int size = Math.min(count, max);
+        List<Integer> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(matches[i]);
+        }
+        return result;
+    }
+
+    private void apply(Map<Integer, Row> changes) {
+        lock.writeLock().lock();
+        try {
+            changes.forEach((chip, row) -> {
+                if (row != null) {
+                    columns.upsert(chip, row);
+                } else {
+                    columns.delete(chip);
+                }
+            });
+            int dead = columns.size - columns.live;
+            if (dead > 0 && dead >= columns.size * compactRatio) {
+                columns = columns.compact();
+                logger.debug("Snapshot columnar compactado: {} filas borradas eliminadas, {} vivas", dead, columns.live);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ========== Estructuras ==========
+
+    /** Valores de una fila que aún no está en las columnas (cambio pendiente). */
+    private record Row(String nombre, String tipoMascota, int edad, String sexo) {
+
+        boolean matches(MascotaQueryDto filter) {
+            return filter == null
+                    || (filter.getNombre() == null || filter.getNombre().equals(nombre))
+                    && (filter.getTipoMascota() == null || filter.getTipoMascota().equals(tipoMascota))
+                    && (filter.getSexo() == null || filter.getSexo().equals(sexo));
+        }
+    }
+
+    /** Filtro traducido a códigos de diccionario (ANY = sin filtro). */
+    private record Filter(int nombre, int tipo, int sexo) {
+    }
+
+    /** Acumulador de un grupo: recuento, suma, mínimo y máximo de edad. */
+    private static final class Group {
+        long count;
+        long sum;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+
+        void add(int edad) {
+            count++;
+            sum += edad;
+            min = Math.min(min, edad);
+            max = Math.max(max, edad);
+        }
+
+        void merge(Group other) {
+            count += other.count;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+
+        MascotaStats toStats(String tipo, String sexo) {
+            return new MascotaStats(tipo, sexo, count, min, max, (double) sum / count);
+        }
+    }
+
+    /**
+     * Valor <-> código. El código 0 es siempre null (sexo es opcional).
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        Dictionary() {
+            values.add(null);
+        }
+
+        int encode(String value) {
+            if (value == null) {
+                return 0;
+            }
+            return codes.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+
+        /** Código de un valor, o null si ninguna fila lo tiene. */
+        Integer lookup(String value) {
+            return value == null ? Integer.valueOf(0) : codes.get(value);
+        }
+
+        String value(int code) {
+            return values.get(code);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+
+    private static final class Columns {
+        int size;
+        int live;
+        int[] numChip;
+        int[] edad;
+        int[] tipo;
+        int[] sexo;
+        int[] nombre;
+        boolean[] deleted;
+        final Map<Integer, Integer> rowByChip = new HashMap<>();
+        final Dictionary tipos = new Dictionary();
+        final Dictionary sexos = new Dictionary();
+        final Dictionary nombres = new Dictionary();
+
+        Columns(int capacity) {
+            numChip = new int[capacity];
+            edad = new int[capacity];
+            tipo = new int[capacity];
+            sexo = new int[capacity];
+            nombre = new int[capacity];
+            deleted = new boolean[capacity];
+        }
+
+        void upsert(int chip, Row values) {
+            Integer row = rowByChip.get(chip);
+            if (row == null) {
+                if (size == numChip.length) {
+                    grow();
+                }
+                row = size++;
+                rowByChip.put(chip, row);
+                live++;
+            }
+            numChip[row] = chip;
+            edad[row] = values.edad();
+            tipo[row] = tipos.encode(values.tipoMascota());
+            sexo[row] = sexos.encode(values.sexo());
+            nombre[row] = nombres.encode(values.nombre());
+            deleted[row] = false;
+        }
+
+        void delete(int chip) {
+            Integer row = rowByChip.remove(chip);
+            if (row != null) {
+                deleted[row] = true;
+                live--;
+            }
+        }
+
+        /**
+         * Copia con solo las filas vivas (en el mismo orden) y diccionarios
+         * rehechos: los valores que ya no usa ninguna fila desaparecen.
+         */
+        Columns compact() {
+            Columns fresh = new Columns(Math.max(16, live));
+            for (int row = 0; row < size; row++) {
+                if (!deleted[row]) {
+                    fresh.upsert(numChip[row], new Row(nombres.value(nombre[row]), tipos.value(tipo[row]),
+                            edad[row], sexos.value(sexo[row])));
+                }
+            }
+            return fresh;
+        }
+
+        private void grow() {
+            int capacity = numChip.length * 2;
+            numChip = Arrays.copyOf(numChip, capacity);
+            edad = Arrays.copyOf(edad, capacity);
+            tipo = Arrays.copyOf(tipo, capacity);
+            sexo = Arrays.copyOf(sexo, capacity);
+            nombre = Arrays.copyOf(nombre, capacity);
+            deleted = Arrays.copyOf(deleted, capacity);
+        }
+
+        /**
+         * Filtro en códigos, o null si algún valor buscado no aparece en
+         * ninguna fila (resultado vacío sin recorrer nada).
+         */
+        Filter filterFor(MascotaQueryDto filter) {
+            if (filter == null) {
+                return new Filter(ANY, ANY, ANY);
+            }
+            Integer nombreCode = filter.getNombre() != null ? nombres.lookup(filter.getNombre()) : Integer.valueOf(ANY);
+            Integer tipoCode = filter.getTipoMascota() != null ? tipos.lookup(filter.getTipoMascota()) : Integer.valueOf(ANY);
+            Integer sexoCode = filter.getSexo() != null ? sexos.lookup(filter.getSexo()) : Integer.valueOf(ANY);
+            if (nombreCode == null || tipoCode == null || sexoCode == null) {
+                return null;
+            }
+            return new Filter(nombreCode, tipoCode, sexoCode);
+        }
+    }
+
+    /**
+     * Recorrido de las filas [from, to): si el tramo es grande se divide en
+     * dos mitades que se ejecutan en paralelo (fork) y se combinan (join).
+     */
+    private static final class ScanTask extends RecursiveTask<Group[]> {
+        private final Columns c;
+        private final Filter filter;
+        private final BitSet skip;
+        private final boolean byTipo;
+        private final boolean bySexo;
+        private final int sexoSlots;
+        private final int slots;
+        private final int from;
+        private final int to;
+
+        ScanTask(Columns c, Filter filter, BitSet skip, boolean byTipo, boolean bySexo,
+                 int sexoSlots, int slots, int from, int to) {
+            this.c = c;
+            this.filter = filter;
+            this.skip = skip;
+            this.byTipo = byTipo;
+            this.bySexo = bySexo;
+            this.sexoSlots = sexoSlots;
+            this.slots = slots;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Group[] compute() {
+            if (to - from > SCAN_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                ScanTask left = new ScanTask(c, filter, skip, byTipo, bySexo, sexoSlots, slots, from, mid);
+                ScanTask right = new ScanTask(c, filter, skip, byTipo, bySexo, sexoSlots, slots, mid, to);
+                left.fork();
+                Group[] result = right.compute();
+                Group[] other = left.join();
+                for (int slot = 0; slot < slots; slot++) {
+                    result[slot].merge(other[slot]);
+                }
+                return result;
+            }
+
+            Group[] result = new Group[slots];
+            for (int slot = 0; slot < slots; slot++) {
+                result[slot] = new Group();
+            }
+            int[] edad = c.edad;
+            int[] tipo = c.tipo;
+            int[] sexo = c.sexo;
+            int[] nombre = c.nombre;
+            boolean[] deleted = c.deleted;
+            for (int row = from; row < to; row++) {
+                if (deleted[row] || (skip != null && skip.get(row))
+                        || (filter.nombre() != ANY && nombre[row] != filter.nombre())
+                        || (filter.tipo() != ANY && tipo[row] != filter.tipo())
+                        || (filter.sexo() != ANY && sexo[row] != filter.sexo())) {
+                    continue;
+                }
+                int slot = (byTipo ? tipo[row] * sexoSlots : 0) + (bySexo ? sexo[row] : 0);
+                result[slot].add(edad[row]);
+            }
+            return result;
+        }
+    }
+}
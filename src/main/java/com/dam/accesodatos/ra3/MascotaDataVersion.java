@@ -0,0 +1,94 @@
+package com.dam.accesodatos.ra3;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Versión de los datos de la tabla mascotas, para ETag / If-None-Match.
+ *
+ * Cada escritura del servicio llama a markChanged(). Dentro de una
+ * transacción el incremento se hace UNA vez y solo al hacer commit: nunca se
+ * publica una versión nueva con datos que aún podrían deshacerse. Si una
+ * lectura concurrente se cuela entre el commit y el incremento, el cliente
+ * recibe datos nuevos con la versión anterior y en la siguiente consulta
+ * simplemente obtiene un 200 de más.
+ *
+ * Empieza en la hora de arranque: las ETag de una ejecución anterior de la
+ * aplicación no coinciden con las de esta.
+ *
+ * NOTA: igual que MascotaTipoCounters, las escrituras que no pasan por el
+ * servicio (consola H2, SQL directo) no cambian la versión.
+ */
+@Component
+public class MascotaDataVersion {
+
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    public long current() {
+        return version.get();
+    }
+
+    /**
+     * Registra que los datos han cambiado. Con transacción activa, la
+     * versión sube al hacer commit (y no sube si hay rollback).
+     */
+    public void markChanged() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            version.incrementAndGet();
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(MascotaDataVersion.this);
+                if (status == STATUS_COMMITTED) {
+                    version.incrementAndGet();
+                }
+            }
+        });
+    }
+
+    /**
+     * true si la transacción actual ha hecho escrituras que aún no son
+     * visibles para las demás (la versión todavía no ha subido).
+     */
+    public boolean isChangedInCurrentTransaction() {
+        return TransactionSynchronizationManager.hasResource(this);
+    }
+
+    /**
+     * ETag de una respuesta: versión actual + hash de los parámetros de la
+     * petición (cada página o tipo tiene su propia ETag).
+     */
+    public String etag(Object... requestParts) {
+        return "\"" + Long.toHexString(current()) + "-" + Integer.toHexString(Arrays.hashCode(requestParts)) + "\"";
+    }
+
+    /**
+     * true si la cabecera If-None-Match contiene la ETag (admite lista
+     * separada por comas, prefijo débil W/ y "*").
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,265 @@
+package com.dam.accesodatos.ra3;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.mcp.server.annotation.Tool;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.dam.accesodatos.model.ExportResult;
+import com.dam.accesodatos.model.MascotaView;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Exportación de la tabla mascotas a un fichero CSV o NDJSON, comprimido con
+ * gzip o sin comprimir.
+ *
+ * find_all_mascotas construye la lista entera y un único documento JSON. Aquí
+ * se reutiliza streamMascotas (cursor JDBC de solo avance, fetch-size filas
+ * por viaje, proyecciones MascotaView fuera del contexto de persistencia) y
+ * cada fila se escribe en cuanto llega:
+ *
+ *   cursor -> Writer/JsonGenerator -> GZIPOutputStream
+ *          -> BufferedOutputStream(buffer-size) -> FileChannel
+ *
+ * En memoria solo están la fila actual y los buffers, sea cual sea el tamaño
+ * de la tabla. Se escribe en un fichero temporal del mismo directorio que se
+ * publica al terminar (ver publish()): un fichero con el nombre pedido siempre
+ * está completo y nunca se sobrescribe.
+ *
+ * El CSV usa las mismas columnas que import_mascotas, así que un export se
+ * puede volver a importar (un CSV sin comprimir). Los saltos de línea dentro
+ * de un campo se escriben entre comillas y el importador los respeta.
+ */
+@Component
+public class MascotaExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(MascotaExporter.class);
+
+    private static final String CSV_HEADER = "num_chip,nombre,tipo_mascota,edad,sexo,otros_detalles";
+
+    @Autowired
+    private HibernateMascotaService hibernateMascotaService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Directorio donde export_mascotas puede crear ficheros (rutas relativas a él)
+    @Value("${pawner.export.base-dir:exports}")
+    private String baseDir = "exports";
+
+    // Bytes por escritura en el FileChannel (y buffer del compresor)
+    @Value("${pawner.export.buffer-size:65536}")
+    private int bufferSize = 65536;
+
+    @Tool(name = "export_mascotas",
+          description = "Exporta todas las mascotas a un fichero CSV o NDJSON del servidor (gzip opcional) recorriendo la tabla con un cursor, con memoria constante")
+    public ExportResult exportMascotas(String path, String format, String compression) {
+        Path file = resolve(path);
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        Compression fileCompression = Compression.of(compression, name);
+        Format fileFormat = Format.of(format, fileCompression.strip(name));
+
+        long start = System.nanoTime();
+        long rows;
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".part");
+            rows = write(tmp, fileFormat, fileCompression);
+            publish(tmp, file);
+
+            long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            ExportResult result = new ExportResult(file.toString(), fileFormat.name().toLowerCase(Locale.ROOT),
+                    fileCompression.name().toLowerCase(Locale.ROOT), rows, Files.size(file), totalMillis);
+            logger.info("Exportación terminada: {} ({} filas/s)", result, Math.round(result.getRowsPerSecond()));
+            return result;
+        } catch (FileAlreadyExistsException e) {
+            throw new IllegalArgumentException("Ya existe el fichero " + file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error escribiendo " + file, e);
+        } finally {
+            deleteQuietly(tmp);
+        }
+    }
+
+    /**
+     * Da al fichero temporal, ya completo, el nombre pedido sin pisar nunca un
+     * fichero existente. La comprobación de resolve() no basta: dos
+     * exportaciones al mismo nombre pueden pasarla a la vez, y un rename (lo
+     * que hace ATOMIC_MOVE) reemplaza el destino sin avisar. createLink() es
+     * atómico y falla con FileAlreadyExistsException si el nombre ya existe;
+     * después se borra el temporal. Si el sistema de ficheros no admite
+     * enlaces (o no deja crearlos), move() sin REPLACE_EXISTING también falla
+     * si el destino existe.
+     */
+    private static void publish(Path tmp, Path file) throws IOException {
+        try {
+            Files.createLink(file, tmp);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.move(tmp, file);
+        }
+    }
+
+    private long write(Path tmp, Format format, Compression compression) throws IOException {
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            BufferedOutputStream buffered = new BufferedOutputStream(Channels.newOutputStream(channel), bufferSize);
+            OutputStream out = compression == Compression.GZIP ? new GZIPOutputStream(buffered, bufferSize) : buffered;
+
+            long rows = format == Format.CSV ? writeCsv(out) : writeNdjson(out);
+
+            // Sin close(): cerraría el canal antes de force()
+            if (out instanceof GZIPOutputStream gzip) {
+                gzip.finish();
+            }
+            buffered.flush();
+            channel.force(false);
+            return rows;
+        }
+    }
+
+    private long writeCsv(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), bufferSize);
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        StringBuilder line = new StringBuilder(128);
+        long rows = hibernateMascotaService.streamMascotas(null, mascota -> {
+            line.setLength(0);
+            line.append(mascota.getNumChip()).append(',');
+            appendCsv(line, mascota.getNombre()).append(',');
+            appendCsv(line, mascota.getTipoMascota()).append(',');
+            line.append(mascota.getEdad()).append(',');
+            appendCsv(line, mascota.getSexo()).append(',');
+            appendCsv(line, mascota.getOtrosDetalles()).append('\n');
+            try {
+                writer.append(line);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
+        return rows;
+    }
+
+    private long writeNdjson(OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(MascotaView.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            return hibernateMascotaService.streamMascotas(null, mascota -> {
+                try {
+                    writer.writeValue(generator, mascota);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Campo CSV: vacío si es null y entre comillas dobles si contiene comas,
+     * comillas o saltos de línea (las comillas se duplican).
+     */
+    private static StringBuilder appendCsv(StringBuilder line, String value) {
+        if (value == null) {
+            return line;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return line.append(value);
+        }
+        return line.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private Path resolve(String path) {
+        if (path == null || path.isBlank()) {
+            throw new IllegalArgumentException("Indica la ruta del fichero de exportación");
+        }
+        Path base = Paths.get(baseDir).toAbsolutePath().normalize();
+        Path file = base.resolve(path).normalize();
+        if (!file.startsWith(base) || file.equals(base)) {
+            throw new IllegalArgumentException("Solo se pueden exportar ficheros a " + base);
+        }
+        if (Files.exists(file)) {
+            throw new IllegalArgumentException("Ya existe el fichero " + file);
+        }
+        try {
+            Files.createDirectories(file.getParent());
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se puede crear el directorio " + file.getParent(), e);
+        }
+        return file;
+    }
+
+    private static void deleteQuietly(Path tmp) {
+        if (tmp == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+            logger.warn("No se pudo borrar el fichero temporal {}", tmp, e);
+        }
+    }
+
+    private enum Format {
+        CSV, NDJSON;
+
+        static Format of(String format, String name) {
+            String value = format != null && !format.isBlank() ? format.trim().toLowerCase(Locale.ROOT) : name;
+            if (value.equals("csv") || value.endsWith(".csv")) {
+                return CSV;
+            }
+            if (value.equals("ndjson") || value.equals("jsonl") || value.endsWith(".ndjson") || value.endsWith(".jsonl")) {
+                return NDJSON;
+            }
+            throw new IllegalArgumentException("Formato no soportado (csv o ndjson): " + value);
+        }
+    }
+
+    private enum Compression {
+        NONE, GZIP;
+
+        static Compression of(String compression, String name) {
+            if (compression == null || compression.isBlank()) {
+                return name.endsWith(".gz") ? GZIP : NONE;
+            }
+            String value = compression.trim().toLowerCase(Locale.ROOT);
+            return switch (value) {
+                case "none" -> NONE;
+                case "gzip", "gz" -> GZIP;
+                default -> throw new IllegalArgumentException("Compresión no soportada (gzip o none): " + value);
+            };
+        }
+
+        String strip(String name) {
+            return this == GZIP && name.endsWith(".gz") ? name.substring(0, name.length() - 3) : name;
+        }
+    }
+}
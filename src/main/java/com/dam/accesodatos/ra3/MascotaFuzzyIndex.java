@@ -0,0 +1,409 @@
+package com.dam.accesodatos.ra3;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Búsqueda aproximada de nombres de mascota ("Cocco" -> "Coco", "Michy" ->
+ * "Michi") mantenida en memoria.
+ *
+ * Dos estructuras sobre los nombres DISTINTOS (en minúsculas y sin tildes):
+ * - BK-tree por distancia de Levenshtein: cada hijo cuelga de su padre según
+ *   su distancia a él. Por la desigualdad triangular, para buscar a distancia
+ *   <= r de un texto que está a d de un nodo solo hay que bajar por los hijos
+ *   d-r .. d+r; el resto del árbol se descarta sin calcular distancias.
+ * - Clave fonética (reglas del español: v/b, c/z/s, qu/k, ll/y, h muda,
+ *   letras dobles...): encuentra errores que están lejos en Levenshtein pero
+ *   suenan igual.
+ *
+ * Resultado: mascotas ordenadas por distancia (a igual distancia, primero las
+ * que coinciden en clave fonética) y después por chip.
+ *
+ * Igual que MascotaNombreIndex: se construye al arrancar, las escrituras del
+ * servicio llaman a put()/remove() y los cambios se aplican al hacer commit
+ * (ver PendingChanges).
+ *
+ * Los BK-tree no admiten borrar nodos: un nombre que se queda sin mascotas se
+ * mantiene en el árbol vacío (se ignora al buscar) hasta el siguiente rebuild().
+ */
+@Component
+public class MascotaFuzzyIndex implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(MascotaFuzzyIndex.class);
+
+    // Distancia de Levenshtein máxima para considerar que un nombre se parece
+    @Value("${pawner.fuzzy.max-distance:2}")
+    private int maxDistance = 2;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Un escritor (commit o rebuild) a la vez; las búsquedas en paralelo
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Tree tree = new Tree();
+
+    private volatile boolean ready = false;
+
+    // chip -> nombre nuevo normalizado (null = borrado) de la transacción actual
+    private final PendingChanges<Integer, String> pending = new PendingChanges<>(this::apply);
+
+    /**
+     * Reconstruye el árbol y la clave fonética desde la BD leyendo solo
+     * (num_chip, nombre). También elimina los nodos vacíos.
+     */
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        List<Object[]> rows = entityManager.createQuery(
+                "SELECT m.numChip, m.nombre FROM Mascota m", Object[].class)
+                .getResultList();
+
+        Tree fresh = new Tree();
+        for (Object[] row : rows) {
+            fresh.add((Integer) row[0], normalize((String) row[1]));
+        }
+
+        lock.writeLock().lock();
+        try {
+            tree = fresh;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+        logger.info("Índice aproximado de nombres reconstruido: {} mascotas, {} nombres distintos",
+                fresh.nombres.size(), fresh.nodes.size());
+    }
+
+    /**
+     * Primera carga, antes de que el servidor web acepte peticiones (ver InitialLoad).
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        InitialLoad.run(transactionManager, this::rebuild);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Registra el nombre (nuevo o cambiado) de una mascota. Con transacción
+     * activa se aplica en el commit; sin transacción, inmediatamente.
+     */
+    public void put(int numChip, String nombre) {
+        pending.record(numChip, normalize(nombre));
+    }
+
+    /**
+     * Registra el borrado de una mascota.
+     */
+    public void remove(int numChip) {
+        pending.record(numChip, null);
+    }
+
+    /**
+     * Hasta limit chips de las mascotas con nombre más parecido al texto,
+     * incluyendo los cambios pendientes de la transacción actual.
+     */
+    public List<Integer> search(String text, int limit) {
+        String query = normalize(text);
+        if (query == null || query.isEmpty()) {
+            return List.of();
+        }
+        String key = phoneticKey(query);
+
+        List<Match> matches = new ArrayList<>();
+        Map<Integer, String> changes = pending.current();
+        lock.readLock().lock();
+        try {
+            Map<Node, Match> byNode = new HashMap<>();
+            for (Match match : tree.within(query, maxDistance)) {
+                byNode.put(match.node(), match);
+            }
+            for (String nombre : tree.phonetic.getOrDefault(key, Set.of())) {
+                Node node = tree.nodes.get(nombre);
+                byNode.computeIfAbsent(node, n -> new Match(n, null, levenshtein(query, n.nombre), true));
+            }
+            for (Match match : byNode.values()) {
+                // Se copian (como mucho limit) los chips: el árbol puede cambiar al soltar el lock
+                List<Integer> chips = new ArrayList<>();
+                for (Integer chip : match.node().chips) {
+                    if (chips.size() == limit) {
+                        break;
+                    }
+                    if (changes == null || !changes.containsKey(chip)) {
+                        chips.add(chip);
+                    }
+                }
+                if (!chips.isEmpty()) {
+                    boolean phonetic = match.phonetic() || phoneticKey(match.node().nombre).equals(key);
+                    matches.add(new Match(match.node(), chips, match.distance(), phonetic));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (changes != null) {
+            changes.forEach((chip, nombre) -> {
+                if (nombre == null) {
+                    return;
+                }
+                int distance = levenshtein(query, nombre);
+                boolean phonetic = phoneticKey(nombre).equals(key);
+                if (distance <= maxDistance || phonetic) {
+                    matches.add(new Match(new Node(nombre), List.of(chip), distance, phonetic));
+                }
+            });
+        }
+
+        matches.sort(Comparator.comparingInt(Match::distance)
+                .thenComparing(m -> !m.phonetic())
+                .thenComparingInt(m -> m.chips().get(0)));
+
+        List<Integer> result = new ArrayList<>(limit);
+        for (Match match : matches) {
+            for (Integer chip : match.chips()) {
+                if (result.size() == limit) {
+                    return result;
+                }
+                result.add(chip);
+            }
+        }
+        return result;
+    }
+
+    private void apply(Map<Integer, String> changes) {
+        lock.writeLock().lock();
+        try {
+            changes.forEach((chip, nombre) -> {
+                tree.remove(chip);
+                if (nombre != null) {
+                    tree.add(chip, nombre);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ========== Normalización y distancias ==========
+
+    /**
+     * Minúsculas y sin tildes ("Lúa" y "lua" son el mismo nombre).
+     */
+    static String normalize(String nombre) {
+        if (nombre == null) {
+            return null;
+        }
+        return Normalizer.normalize(nombre.trim(), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Clave fonética para nombres en español: letras que suenan igual se
+     * escriben igual y las repetidas consecutivas se quedan en una.
+     * "Michy" y "Michi" -> "mixi"; "Cocco" y "Koko" -> "koko".
+     */
+    static String phoneticKey(String nombre) {
+        StringBuilder key = new StringBuilder(nombre.length());
+        int length = nombre.length();
+        for (int i = 0; i < length; i++) {
+            char c = nombre.charAt(i);
+            char next = i + 1 < length ? nombre.charAt(i + 1) : 0;
+            char code;
+            switch (c) {
+                case 'c' -> {
+                    if (next == 'h') {
+                        code = 'x';
+                        i++;
+                    } else {
+                        code = next == 'e' || next == 'i' ? 's' : 'k';
+                    }
+                }
+                case 'q' -> {
+                    code = 'k';
+                    if (next == 'u') {
+                        i++;
+                    }
+                }
+                case 'g' -> {
+                    char after = i + 2 < length ? nombre.charAt(i + 2) : 0;
+                    if (next == 'u' && (after == 'e' || after == 'i')) {
+                        code = 'g';
+                        i++;
+                    } else {
+                        code = next == 'e' || next == 'i' ? 'j' : 'g';
+                    }
+                }
+                case 'l' -> {
+                    code = next == 'l' ? 'y' : 'l';
+                    if (next == 'l') {
+                        i++;
+                    }
+                }
+                case 'y' -> code = isVowel(next) ? 'y' : 'i';
+                case 'z' -> code = 's';
+                case 'v', 'w' -> code = 'b';
+                case 'h' -> code = 0;
+                default -> code = c >= 'a' && c <= 'z' ? c : 0;
+            }
+            if (code != 0 && (key.isEmpty() || key.charAt(key.length() - 1) != code)) {
+                key.append(code);
+            }
+        }
+        return key.toString();
+    }
+
+    private static boolean isVowel(char c) {
+        return c == 'a' || c == 'e' || c == 'i' || c == 'o' || c == 'u';
+    }
+
+    /**
+     * Distancia de Levenshtein (inserciones, borrados y sustituciones) con
+     * dos filas de la tabla de programación dinámica.
+     */
+    static int levenshtein(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    // ========== Estructuras ==========
+
+    private record Match(Node node, List<Integer> chips, int distance, boolean phonetic) {
+    }
+
+    private static final class Node {
+        final String nombre;
+        // Ordenados: a igual parecido se devuelven por chip
+        final Set<Integer> chips = new TreeSet<>();
+        // distancia al padre -> hijo
+        Map<Integer, Node> children;
+
+        Node(String nombre) {
+            this.nombre = nombre;
+        }
+    }
+
+    private static final class Tree {
+        Node root;
+        // chip -> nombre normalizado
+        final Map<Integer, String> nombres = new HashMap<>();
+        // nombre normalizado -> nodo del BK-tree
+        final Map<String, Node> nodes = new HashMap<>();
+        // clave fonética -> nombres normalizados
+        final Map<String, Set<String>> phonetic = new HashMap<>();
+
+        void add(Integer chip, String nombre) {
+            if (nombre == null) {
+                return;
+            }
+            Node node = nodes.get(nombre);
+            if (node == null) {
+                node = new Node(nombre);
+                nodes.put(nombre, node);
+                insert(node);
+                phonetic.computeIfAbsent(phoneticKey(nombre), k -> new HashSet<>()).add(nombre);
+            }
+            node.chips.add(chip);
+            nombres.put(chip, nombre);
+        }
+
+        void remove(Integer chip) {
+            String nombre = nombres.remove(chip);
+            if (nombre != null) {
+                nodes.get(nombre).chips.remove(chip);
+            }
+        }
+
+        private void insert(Node node) {
+            if (root == null) {
+                root = node;
+                return;
+            }
+            Node current = root;
+            while (true) {
+                int distance = levenshtein(current.nombre, node.nombre);
+                if (current.children == null) {
+                    current.children = new HashMap<>();
+                }
+                Node child = current.children.get(distance);
+                if (child == null) {
+                    current.children.put(distance, node);
+                    return;
+                }
+                current = child;
+            }
+        }
+
+        /**
+         * Nodos con mascotas a distancia <= radius del texto.
+         */
+        List<Match> within(String query, int radius) {
+            List<Match> found = new ArrayList<>();
+            if (root == null) {
+                return found;
+            }
+            Deque<Node> stack = new ArrayDeque<>();
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                Node node = stack.pop();
+                int distance = levenshtein(query, node.nombre);
+                if (distance <= radius && !node.chips.isEmpty()) {
+                    found.add(new Match(node, null, distance, false));
+                }
+                if (node.children != null) {
+                    for (int d = Math.max(1, distance - radius); d <= distance + radius; d++) {
+                        Node child = node.children.get(d);
+                        if (child != null) {
+                            stack.push(child);
+                        }
+                    }
+                }
+            }
+            return found;
+        }
+    }
+}
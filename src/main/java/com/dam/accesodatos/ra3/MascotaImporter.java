@@ -0,0 +1,716 @@
+package com.dam.accesodatos.ra3;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.mcp.server.annotation.Tool;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.dam.accesodatos.model.ImportResult;
+import com.dam.accesodatos.model.ImportResult.RejectedRow;
+import com.dam.accesodatos.model.Mascota;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+/**
+ * Importación masiva de mascotas desde un fichero CSV o NDJSON.
+ *
+ * transferData necesita la List<Mascota> entera en memoria; aquí el fichero
+ * se lee línea a línea y pasa por una tubería de tres etapas:
+ *
+ *   lector (hilo llamante) -> [cola de líneas] -> parsers (N hilos)
+ *       -> [cola de mascotas] -> escritores (M hilos, transferDataBatched)
+ *
+ * Las dos colas son ArrayBlockingQueue de pocos bloques (queue-capacity) de
+ * chunk-size filas: si la BD va más lenta que el parseo, put() bloquea a los
+ * parsers y éstos al lector (backpressure). En memoria nunca hay más de
+ * unos pocos bloques, sea cual sea el tamaño del fichero.
+ *
+ * Cada bloque se inserta en su propia transacción (transferDataBatched, con
+ * flush/clear alineados al batch JDBC). Si un bloque falla (p. ej. un chip
+ * repetido), se reintenta fila a fila para rechazar solo las filas malas.
+ * Lo ya confirmado se queda aunque la importación se corte a medias.
+ *
+ * Si una etapa muere con una excepción inesperada, lo anota en Progress y
+ * las demás lo ven en su siguiente put()/take() (esperan con offer/poll con
+ * plazo, no indefinidamente) y abandonan: la llamada falla con la causa en
+ * lugar de quedarse bloqueada en una cola que ya nadie vacía. Ningún hilo se
+ * interrumpe: interrumpir un escritor a mitad de transferDataBatched sobre
+ * H2 en fichero puede cerrar su FileChannel y dejar la BD inutilizable. Cada
+ * escritor termina su bloque en curso (commit o rollback normal) y para al
+ * pedir el siguiente.
+ *
+ * Solo se leen ficheros dentro de pawner.import.base-dir. Las importaciones
+ * no se solapan: mientras hay una en curso, otra llamada falla.
+ *
+ * CSV: separado por comas, comillas dobles para campos con comas o saltos
+ * de línea (RFC 4180, lo que escribe export_mascotas). Con cabecera, las columnas van por
+ * nombre (num_chip o numChip...); sin ella, en el orden num_chip, nombre,
+ * tipo_mascota, edad, sexo, otros_detalles.
+ */
+@Component
+public class MascotaImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(MascotaImporter.class);
+
+    private static final List<String> CSV_COLUMNS =
+            List.of("numchip", "nombre", "tipomascota", "edad", "sexo", "otrosdetalles");
+
+    // Marcas de fin para las colas: una por cada hilo consumidor
+    private static final LineChunk END_OF_LINES = new LineChunk(List.of(), List.of());
+    private static final RowChunk END_OF_ROWS = new RowChunk(List.of(), List.of());
+
+    // Cada cuánto comprueba una etapa bloqueada en una cola si otra ha fallado
+    private static final long QUEUE_POLL_MILLIS = 100;
+
+    @Autowired
+    private HibernateMascotaService hibernateMascotaService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    // Directorio del que se pueden importar ficheros (rutas relativas a él)
+    @Value("${pawner.import.base-dir:imports}")
+    private String baseDir = "imports";
+
+    // Filas por bloque: unidad de las colas y de cada transacción
+    @Value("${pawner.import.chunk-size:1000}")
+    private int chunkSize = 1000;
+
+    // Hilos que parsean (0 = uno por procesador)
+    @Value("${pawner.import.parsers:0}")
+    private int parsers = 0;
+
+    // Hilos que insertan, cada uno con su transacción (y su conexión)
+    @Value("${pawner.import.writers:2}")
+    private int writers = 2;
+
+    // Bloques como máximo en cada cola
+    @Value("${pawner.import.queue-capacity:4}")
+    private int queueCapacity = 4;
+
+    // Rechazos que se devuelven con su número de línea (los demás solo se cuentan)
+    @Value("${pawner.import.max-rejections:100}")
+    private int maxRejections = 100;
+
+    // Cada cuántas filas importadas se escribe el progreso en el log
+    @Value("${pawner.import.progress-every:50000}")
+    private long progressEvery = 50000;
+
+    private ObjectReader ndjsonReader;
+
+    private final AtomicReference<Progress> current = new AtomicReference<>();
+
+    @PostConstruct
+    public void init() {
+        ndjsonReader = objectMapper.readerFor(Mascota.class);
+    }
+
+    @Tool(name = "import_mascotas",
+          description = "Importa mascotas desde un fichero CSV o NDJSON del servidor leyéndolo en streaming, parseando en paralelo e insertando por bloques con colas acotadas")
+    public ImportResult importMascotas(String path, String format) {
+        Path file = resolve(path);
+        Format fileFormat = Format.of(format, file);
+
+        Progress progress = new Progress(file.toString());
+        if (!current.compareAndSet(null, progress)) {
+            throw new IllegalStateException("Ya hay una importación en curso: " + current.get().file);
+        }
+        try {
+            return run(file, fileFormat, progress);
+        } finally {
+            current.set(null);
+        }
+    }
+
+    private ImportResult run(Path file, Format format, Progress progress) {
+        int parserCount = parsers > 0 ? parsers : Runtime.getRuntime().availableProcessors();
+        BlockingQueue<LineChunk> lines = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<RowChunk> rows = new ArrayBlockingQueue<>(queueCapacity);
+        ExecutorService pool = Executors.newFixedThreadPool(parserCount + writers);
+        logger.info("Importando {} ({}): {} parsers, {} escritores, bloques de {} filas",
+                file, format, parserCount, writers, chunkSize);
+
+        IOException readError = null;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<Future<?>> writerTasks = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                writerTasks.add(pool.submit(() -> stage(progress, () -> writeLoop(rows, progress))));
+            }
+
+            List<Future<?>> parserTasks = new ArrayList<>();
+            try {
+                StringBuilder record = new StringBuilder(256);
+                String firstRow = null;
+                int[] csvColumns = null;
+                if (format == Format.CSV) {
+                    // La primera fila se lee una sola vez: si no es cabecera pasa tal cual a readLoop
+                    String first = readCsvRecord(reader, record, progress.lineNumber);
+                    csvColumns = csvHeader(first);
+                    if (csvColumns == null) {
+                        csvColumns = defaultColumns();
+                        firstRow = first;
+                    }
+                }
+                int[] columns = csvColumns;
+                for (int i = 0; i < parserCount; i++) {
+                    parserTasks.add(pool.submit(() -> stage(progress, () -> parseLoop(lines, rows, format, columns, progress))));
+                }
+                readLoop(reader, lines, format, firstRow, record, progress);
+            } catch (IOException e) {
+                readError = e;
+            } finally {
+                // Siempre se cierran las etapas, en orden, aunque la lectura falle
+                try {
+                    endStage(lines, END_OF_LINES, parserTasks, progress);
+                } finally {
+                    endStage(rows, END_OF_ROWS, writerTasks, progress);
+                }
+            }
+        } catch (IOException e) {
+            readError = e;
+        } finally {
+            // endStage ya esperó a todas las etapas: no queda ningún hilo trabajando
+            pool.shutdown();
+        }
+
+        if (readError != null) {
+            throw new UncheckedIOException("Error leyendo " + file + " (las filas ya importadas se mantienen)", readError);
+        }
+        ImportResult result = progress.result(format);
+        logger.info("Importación terminada: {}", result);
+        return result;
+    }
+
+    /**
+     * Etapa 1 (hilo llamante): agrupa los registros en bloques de chunkSize y
+     * los encola. put() espera si los parsers van por detrás.
+     *
+     * En NDJSON cada línea es un registro (JSON escapa los saltos de línea).
+     * En CSV un registro puede ocupar varias líneas si un campo entre
+     * comillas contiene saltos de línea; se numera por su primera línea.
+     * firstRow es la primera fila de un CSV sin cabecera (ya leída), o null.
+     */
+    private void readLoop(BufferedReader reader, BlockingQueue<LineChunk> lines, Format format,
+                          String firstRow, StringBuilder record, Progress progress) throws IOException {
+        List<String> buffer = new ArrayList<>(chunkSize);
+        List<Long> lineNumbers = new ArrayList<>(chunkSize);
+        if (firstRow != null) {
+            buffer.add(firstRow);
+            lineNumbers.add(1L);
+        }
+        while (true) {
+            long lineNumber = progress.lineNumber.get() + 1;
+            String line = format == Format.CSV
+                    ? readCsvRecord(reader, record, progress.lineNumber)
+                    : readLine(reader, progress.lineNumber);
+            if (line == null) {
+                break;
+            }
+            buffer.add(line);
+            lineNumbers.add(lineNumber);
+            if (buffer.size() == chunkSize) {
+                put(lines, new LineChunk(buffer, lineNumbers), progress);
+                buffer = new ArrayList<>(chunkSize);
+                lineNumbers = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!buffer.isEmpty()) {
+            put(lines, new LineChunk(buffer, lineNumbers), progress);
+        }
+    }
+
+    private static String readLine(BufferedReader reader, AtomicLong lineNumber) throws IOException {
+        String line = reader.readLine();
+        if (line != null) {
+            lineNumber.incrementAndGet();
+        }
+        return line;
+    }
+
+    /**
+     * Siguiente registro CSV: hasta el primer salto de línea que no está
+     * entre comillas (los de dentro se conservan tal cual, \r incluido).
+     * Devuelve null al final del fichero.
+     */
+    private static String readCsvRecord(BufferedReader reader, StringBuilder record, AtomicLong lineNumber)
+            throws IOException {
+        record.setLength(0);
+        boolean quoted = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '\n') {
+                lineNumber.incrementAndGet();
+                if (!quoted) {
+                    int end = record.length();
+                    if (end > 0 && record.charAt(end - 1) == '\r') {
+                        record.setLength(end - 1);
+                    }
+                    return record.toString();
+                }
+            } else if (c == '"') {
+                // "" dentro de un campo cambia dos veces de estado: el resultado es el mismo
+                quoted = !quoted;
+            }
+            record.append((char) c);
+        }
+        if (record.isEmpty()) {
+            return null;
+        }
+        // Última línea sin salto final; si quedó una comilla abierta, splitCsv la rechaza
+        lineNumber.incrementAndGet();
+        return record.toString();
+    }
+
+    /**
+     * Etapa 2: convierte cada línea en una Mascota válida o en un rechazo.
+     */
+    private void parseLoop(BlockingQueue<LineChunk> lines, BlockingQueue<RowChunk> rows, Format format,
+                           int[] columns, Progress progress) {
+        while (true) {
+            LineChunk chunk = take(lines, progress);
+            if (chunk == END_OF_LINES) {
+                return;
+            }
+            List<Mascota> mascotas = new ArrayList<>(chunk.lines().size());
+            List<Long> lineNumbers = new ArrayList<>(chunk.lines().size());
+            for (int i = 0; i < chunk.lines().size(); i++) {
+                String line = chunk.lines().get(i);
+                if (line.isBlank()) {
+                    continue;
+                }
+                long lineNumber = chunk.lineNumbers().get(i);
+                progress.rowsRead.incrementAndGet();
+                try {
+                    Mascota mascota = format == Format.CSV ? parseCsv(line, columns) : parseNdjson(line);
+                    String error = validate(mascota);
+                    if (error != null) {
+                        progress.reject(lineNumber, error, maxRejections);
+                    } else {
+                        mascotas.add(mascota);
+                        lineNumbers.add(lineNumber);
+                    }
+                } catch (RuntimeException | IOException e) {
+                    progress.reject(lineNumber, "No se puede leer la fila: " + e.getMessage(), maxRejections);
+                }
+            }
+            if (!mascotas.isEmpty()) {
+                put(rows, new RowChunk(mascotas, lineNumbers), progress);
+            }
+        }
+    }
+
+    /**
+     * Etapa 3: un bloque por transacción. Si el bloque falla se repite fila a
+     * fila, cada una en su transacción, para rechazar solo las que fallan.
+     */
+    private void writeLoop(BlockingQueue<RowChunk> rows, Progress progress) {
+        while (true) {
+            RowChunk chunk = take(rows, progress);
+            if (chunk == END_OF_ROWS) {
+                return;
+            }
+            try {
+                hibernateMascotaService.transferDataBatched(chunk.mascotas(), chunkSize);
+                progress.imported(chunk.mascotas().size(), progressEvery);
+            } catch (RuntimeException chunkError) {
+                logger.debug("Bloque de {} filas rechazado, se reintenta fila a fila: {}",
+                        chunk.mascotas().size(), chunkError.getMessage());
+                for (int i = 0; i < chunk.mascotas().size(); i++) {
+                    // Parada cooperativa entre filas si otra etapa ha fallado
+                    progress.checkFailed();
+                    Mascota original = chunk.mascotas().get(i);
+                    // Copia nueva: la instancia del intento fallido pudo quedar asociada a aquella sesión
+                    Mascota mascota = new Mascota(original.getNumChip(), original.getNombre(),
+                            original.getTipoMascota(), original.getEdad(), original.getSexo(),
+                            original.getOtrosDetalles());
+                    try {
+                        hibernateMascotaService.transferDataBatched(List.of(mascota), 1);
+                        progress.imported(1, progressEvery);
+                    } catch (RuntimeException rowError) {
+                        progress.reject(chunk.lineNumbers().get(i), rootMessage(rowError), maxRejections);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Ejecuta el bucle de una etapa; si muere, lo anota para que las demás
+     * dejen de esperar en las colas.
+     */
+    private static void stage(Progress progress, Runnable loop) {
+        try {
+            loop.run();
+        } catch (RuntimeException | Error e) {
+            progress.fail(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Envía una marca de fin por consumidor y espera a que terminen todos,
+     * también si alguna etapa ha fallado (entonces lanza su error al final).
+     */
+    private static <T> void endStage(BlockingQueue<T> queue, T end, List<Future<?>> consumers, Progress progress) {
+        try {
+            for (int i = 0; i < consumers.size(); i++) {
+                put(queue, end, progress);
+            }
+        } finally {
+            awaitAll(consumers, progress);
+        }
+        progress.checkFailed();
+    }
+
+    /**
+     * Espera a que terminen los consumidores sin cancelarlos: si otra etapa
+     * ha fallado, cada uno lo ve en QUEUE_POLL_MILLIS o al acabar su bloque.
+     */
+    private static void awaitAll(List<Future<?>> consumers, Progress progress) {
+        boolean interrupted = false;
+        for (Future<?> consumer : consumers) {
+            while (true) {
+                try {
+                    consumer.get();
+                    break;
+                } catch (InterruptedException e) {
+                    // Se sigue esperando: las etapas paran solas al ver el fallo
+                    interrupted = true;
+                    progress.fail(new IllegalStateException("Importación interrumpida", e));
+                } catch (ExecutionException e) {
+                    // stage() ya anotó el error en progress
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Columnas de la cabecera CSV, o null si no hay cabecera (fichero vacío o
+     * primera fila que empieza por un número de chip).
+     */
+    private static int[] csvHeader(String first) {
+        if (first == null) {
+            return null;
+        }
+        List<String> fields = splitCsv(first);
+        if (isInteger(fields.get(0).trim())) {
+            return null;
+        }
+
+        int[] columns = new int[CSV_COLUMNS.size()];
+        Arrays.fill(columns, -1);
+        for (int i = 0; i < fields.size(); i++) {
+            String name = fields.get(i).trim().replace("_", "").toLowerCase(Locale.ROOT);
+            int column = CSV_COLUMNS.indexOf(name);
+            if (column >= 0) {
+                columns[column] = i;
+            }
+        }
+        for (int required = 0; required < 4; required++) {
+            if (columns[required] < 0) {
+                throw new IllegalArgumentException("Falta la columna " + CSV_COLUMNS.get(required) + " en la cabecera");
+            }
+        }
+        return columns;
+    }
+
+    private static int[] defaultColumns() {
+        return new int[] {0, 1, 2, 3, 4, 5};
+    }
+
+    private static Mascota parseCsv(String line, int[] columns) {
+        List<String> fields = splitCsv(line);
+        Mascota mascota = new Mascota();
+        mascota.setNumChip(Integer.parseInt(field(fields, columns[0], "num_chip")));
+        mascota.setNombre(field(fields, columns[1], "nombre"));
+        mascota.setTipoMascota(field(fields, columns[2], "tipo_mascota"));
+        mascota.setEdad(Integer.parseInt(field(fields, columns[3], "edad")));
+        mascota.setSexo(optionalField(fields, columns[4]));
+        mascota.setOtrosDetalles(optionalField(fields, columns[5]));
+        return mascota;
+    }
+
+    private Mascota parseNdjson(String line) throws IOException {
+        Mascota mascota = ndjsonReader.readValue(line);
+        // Filas nuevas: una versión distinta de 0 haría que persist() la tomase por una entidad existente
+        mascota.setVersion(0);
+        return mascota;
+    }
+
+    private static String field(List<String> fields, int index, String name) {
+        String value = optionalField(fields, index);
+        if (value == null) {
+            throw new IllegalArgumentException("falta " + name);
+        }
+        return value;
+    }
+
+    private static String optionalField(List<String> fields, int index) {
+        if (index < 0 || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Campos de una línea CSV: comas como separador y comillas dobles para
+     * campos que contienen comas ("" dentro de comillas es una comilla).
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("comillas sin cerrar");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private String validate(Mascota mascota) {
+        if (mascota.getNumChip() <= 0) {
+            return "numChip debe ser positivo";
+        }
+        if (mascota.getEdad() < 0) {
+            return "edad no puede ser negativa";
+        }
+        Set<ConstraintViolation<Mascota>> violations = validator.validate(mascota);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private Path resolve(String path) {
+        if (path == null || path.isBlank()) {
+            throw new IllegalArgumentException("Indica la ruta del fichero a importar");
+        }
+        Path base = Paths.get(baseDir).toAbsolutePath().normalize();
+        Path file = base.resolve(path).normalize();
+        if (!file.startsWith(base)) {
+            throw new IllegalArgumentException("Solo se pueden importar ficheros de " + base);
+        }
+        if (!Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("No existe el fichero " + file);
+        }
+        return file;
+    }
+
+    private static boolean isInteger(String value) {
+        try {
+            Integer.parseInt(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage() != null ? root.getMessage() : root.getClass().getSimpleName();
+    }
+
+    /**
+     * put() que deja de esperar si otra etapa ha fallado.
+     */
+    private static <T> void put(BlockingQueue<T> queue, T item, Progress progress) {
+        progress.checkFailed();
+        try {
+            while (!queue.offer(item, QUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                progress.checkFailed();
+            }
+        } catch (InterruptedException e) {
+            throw interrupted(progress, e);
+        }
+    }
+
+    /**
+     * take() que deja de esperar si otra etapa ha fallado.
+     */
+    private static <T> T take(BlockingQueue<T> queue, Progress progress) {
+        try {
+            T item;
+            while ((item = queue.poll(QUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                progress.checkFailed();
+            }
+            return item;
+        } catch (InterruptedException e) {
+            throw interrupted(progress, e);
+        }
+    }
+
+    /**
+     * Un hilo interrumpido deja de participar: se anota como fallo para que
+     * las demás etapas no le esperen en las colas.
+     */
+    private static IllegalStateException interrupted(Progress progress, InterruptedException e) {
+        Thread.currentThread().interrupt();
+        IllegalStateException error = new IllegalStateException("Importación interrumpida", e);
+        progress.fail(error);
+        return error;
+    }
+
+    /**
+     * Progreso de la importación en curso (null si no hay ninguna), para
+     * GET /mcp/metrics.
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Progress progress = current.get();
+        stats.put("running", progress != null);
+        if (progress != null) {
+            long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - progress.startNanos));
+            stats.put("file", progress.file);
+            stats.put("rowsRead", progress.rowsRead.get());
+            stats.put("imported", progress.imported.get());
+            stats.put("rejected", progress.rejected.get());
+            stats.put("rowsPerSecond", progress.imported.get() * 1000.0 / elapsedMillis);
+        }
+        return stats;
+    }
+
+    private enum Format {
+        CSV, NDJSON;
+
+        static Format of(String format, Path file) {
+            String name = format != null && !format.isBlank()
+                    ? format.trim().toLowerCase(Locale.ROOT)
+                    : file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.equals("csv") || name.endsWith(".csv")) {
+                return CSV;
+            }
+            if (name.equals("ndjson") || name.equals("jsonl") || name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+                return NDJSON;
+            }
+            throw new IllegalArgumentException("Formato no soportado (csv o ndjson): " + name);
+        }
+    }
+
+    private record LineChunk(List<String> lines, List<Long> lineNumbers) {
+    }
+
+    private record RowChunk(List<Mascota> mascotas, List<Long> lineNumbers) {
+    }
+
+    private static final class Progress {
+        private final String file;
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong lineNumber = new AtomicLong();
+        private final AtomicLong rowsRead = new AtomicLong();
+        private final AtomicLong imported = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final Queue<RejectedRow> rejections = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger keptRejections = new AtomicInteger();
+        // Primer error que ha matado una etapa (null = ninguno)
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Progress(String file) {
+            this.file = file;
+        }
+
+        void fail(Throwable error) {
+            if (failure.compareAndSet(null, error)) {
+                logger.error("Importación {}: una etapa ha fallado, se cancelan las demás", file, error);
+            }
+        }
+
+        void checkFailed() {
+            Throwable error = failure.get();
+            if (error != null) {
+                throw new RuntimeException("Error en la importación (las filas ya importadas se mantienen): "
+                        + rootMessage(error), error);
+            }
+        }
+
+        void reject(long line, String reason, int maxRejections) {
+            rejected.incrementAndGet();
+            if (keptRejections.incrementAndGet() <= maxRejections) {
+                rejections.add(new RejectedRow(line, reason));
+            }
+        }
+
+        void imported(int rows, long progressEvery) {
+            long after = imported.addAndGet(rows);
+            if (progressEvery > 0 && (after - rows) / progressEvery != after / progressEvery) {
+                long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                logger.info("Importación {}: {} filas importadas, {} rechazadas ({} filas/s)",
+                        file, after, rejected.get(), after * 1000 / elapsedMillis);
+            }
+        }
+
+        ImportResult result(Format format) {
+            List<RejectedRow> sorted = new ArrayList<>(rejections);
+            sorted.sort((a, b) -> Long.compare(a.getLine(), b.getLine()));
+            return new ImportResult(file, format.name().toLowerCase(Locale.ROOT), rowsRead.get(), imported.get(),
+                    rejected.get(), sorted, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.dam.accesodatos.ra3;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Índice de n-gramas sobre mascotas.nombre mantenido en memoria.
+ *
+ * findByNombreContainingIgnoreCase genera LOWER(nombre) LIKE '%x%': con el
+ * comodín al principio ningún índice B-tree sirve y H2 recorre la tabla
+ * entera en cada llamada. Aquí cada nombre (en minúsculas) se parte en
+ * unigramas, bigramas y trigramas ("luna" -> "l", "lu", "lun", "una"...) y
+ * para cada uno se guarda el conjunto ordenado de chips que lo contienen
+ * (posting list).
+ *
+ * BÚSQUEDA de "un" dentro del nombre:
+ * - Textos de 1 a 3 letras: su propia posting list ya es la respuesta.
+ * - Textos más largos: se intersecan las posting lists de sus trigramas,
+ *   recorriendo la más corta, y los candidatos se comprueban con contains()
+ *   sobre el nombre guardado (tener los trigramas no garantiza que estén
+ *   seguidos).
+ * - El recorrido va en orden de chip y para al llegar a limit resultados:
+ *   la latencia no crece con la tabla ni con el total de coincidencias.
+ *
+ * Se construye al arrancar y los métodos de escritura del servicio llaman a
+ * put()/remove(); los cambios se aplican al hacer commit (ver PendingChanges)
+ * y la propia transacción ya los ve.
+ */
+@Component
+public class MascotaNombreIndex implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(MascotaNombreIndex.class);
+
+    private static final int GRAM = 3;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Un escritor (commit o rebuild) a la vez; las búsquedas en paralelo
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // chip -> nombre en minúsculas
+    private Map<Integer, String> nombres = new HashMap<>();
+
+    // n-grama (1 a 3 letras) -> chips cuyo nombre lo contiene, ordenados
+    private Map<String, NavigableSet<Integer>> postings = new HashMap<>();
+
+    private volatile boolean ready = false;
+
+    // chip -> nombre nuevo (null = borrado) de la transacción actual
+    private final PendingChanges<Integer, String> pending = new PendingChanges<>(this::apply);
+
+    /**
+     * Reconstruye el índice desde la BD leyendo solo (num_chip, nombre).
+     */
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        List<Object[]> rows = entityManager.createQuery(
+                "SELECT m.numChip, m.nombre FROM Mascota m", Object[].class)
+                .getResultList();
+
+        Map<Integer, String> freshNombres = new HashMap<>(rows.size() * 2);
+        Map<String, NavigableSet<Integer>> freshPostings = new HashMap<>();
+        for (Object[] row : rows) {
+            index(freshNombres, freshPostings, (Integer) row[0], normalize((String) row[1]));
+        }
+
+        lock.writeLock().lock();
+        try {
+            nombres = freshNombres;
+            postings = freshPostings;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+        logger.info("Índice de nombres reconstruido: {} mascotas, {} n-gramas",
+                freshNombres.size(), freshPostings.size());
+    }
+
+    /**
+     * Primera carga, antes de que el servidor web acepte peticiones (ver InitialLoad).
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        InitialLoad.run(transactionManager, this::rebuild);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Registra el nombre (nuevo o cambiado) de una mascota. Con transacción
+     * activa se aplica en el commit; sin transacción, inmediatamente.
+     */
+    public void put(int numChip, String nombre) {
+        pending.record(numChip, normalize(nombre));
+    }
+
+    /**
+     * Registra el borrado de una mascota.
+     */
+    public void remove(int numChip) {
+        pending.record(numChip, null);
+    }
+
+    /**
+     * Los limit primeros chips (en orden) cuyo nombre contiene el texto, sin
+     * distinguir mayúsculas, incluyendo los cambios pendientes de la
+     * transacción actual.
+     *
+     * Las posting lists están ordenadas por chip: se recorre la más corta en
+     * orden y se para al llegar a limit coincidencias, así que el coste
+     * depende de limit y de lo selectivo que sea el texto, no del tamaño de
+     * la tabla ni del total de coincidencias.
+     */
+    public List<Integer> search(String fragment, int limit) {
+        String text = normalize(fragment);
+        if (text == null || text.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        List<Integer> result = new ArrayList<>(Math.min(limit, 1024));
+        Map<Integer, String> changes = pending.current();
+        lock.readLock().lock();
+        try {
+            List<NavigableSet<Integer>> lists = postingsFor(text);
+            if (!lists.isEmpty()) {
+                for (Integer chip : lists.get(0)) {
+                    if (result.size() == limit) {
+                        break;
+                    }
+                    if ((changes == null || !changes.containsKey(chip)) && inAll(lists, chip)
+                            // Con un solo n-grama (texto de hasta 3 letras) la posting list ya es exacta
+                            && (text.length() <= GRAM || nombres.get(chip).contains(text))) {
+                        result.add(chip);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (changes != null) {
+            changes.forEach((chip, nombre) -> {
+                if (nombre != null && nombre.contains(text)) {
+                    result.add(chip);
+                }
+            });
+            result.sort(null);
+            if (result.size() > limit) {
+                return new ArrayList<>(result.subList(0, limit));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Posting lists de los n-gramas del texto, de la más corta a la más
+     * larga (vacía si alguno no aparece en ningún nombre). Textos de 1 o 2
+     * letras usan su propio unigrama/bigrama. Se llama con el read lock tomado.
+     */
+    private List<NavigableSet<Integer>> postingsFor(String text) {
+        List<NavigableSet<Integer>> lists = new ArrayList<>();
+        for (String gram : text.length() <= GRAM ? Set.of(text) : trigrams(text)) {
+            NavigableSet<Integer> posting = postings.get(gram);
+            if (posting == null) {
+                return List.of();
+            }
+            lists.add(posting);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        return lists;
+    }
+
+    private static boolean inAll(List<NavigableSet<Integer>> lists, Integer chip) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(chip)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void apply(Map<Integer, String> changes) {
+        lock.writeLock().lock();
+        try {
+            changes.forEach((chip, nombre) -> {
+                unindex(chip);
+                if (nombre != null) {
+                    index(nombres, postings, chip, nombre);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void unindex(Integer chip) {
+        String anterior = nombres.remove(chip);
+        if (anterior == null) {
+            return;
+        }
+        for (String gram : grams(anterior)) {
+            NavigableSet<Integer> posting = postings.get(gram);
+            if (posting != null && posting.remove(chip) && posting.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    private static void index(Map<Integer, String> nombres, Map<String, NavigableSet<Integer>> postings,
+                              Integer chip, String nombre) {
+        if (nombre == null) {
+            return;
+        }
+        nombres.put(chip, nombre);
+        for (String gram : grams(nombre)) {
+            postings.computeIfAbsent(gram, g -> new TreeSet<>()).add(chip);
+        }
+    }
+
+    /**
+     * Unigramas, bigramas y trigramas del texto: los dos primeros sirven para
+     * buscar textos de 1 o 2 letras sin recorrer todos los nombres.
+     */
+    static Set<String> grams(String text) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int size = 1; size <= GRAM; size++) {
+            for (int i = 0; i + size <= text.length(); i++) {
+                grams.add(text.substring(i, i + size));
+            }
+        }
+        return grams;
+    }
+
+    static Set<String> trigrams(String text) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? null : text.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,172 @@
+package com.dam.accesodatos.ra3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.dam.accesodatos.model.Mascota;
+import com.dam.accesodatos.model.MascotaQueryDto;
+import com.dam.accesodatos.model.MascotaView;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+
+/**
+ * Registro de consultas precompiladas para searchMascotas.
+ *
+ * Antes cada búsqueda construía el JPQL con un StringBuilder y llamaba a
+ * createQuery(), con lo que Hibernate tenía que analizar la cadena (o buscarla
+ * en su caché de planes) en cada llamada. Como solo hay 3 filtros opcionales
+ * (nombre, tipo, sexo) más el cursor de paginación, hay 16 combinaciones
+ * posibles: se generan todas al arrancar y se registran como named queries
+ * con EntityManagerFactory.addNamedQuery(). En cada búsqueda solo queda elegir
+ * el nombre y enlazar parámetros.
+ *
+ * Cada combinación se registra devolviendo la proyección MascotaView
+ * ("MascotaView.search.N"), que usan los listados paginados. La variante con
+ * entidades Mascota ("Mascota.search.N") solo la usa searchMascotas, que no
+ * pagina: se registran solo las 8 combinaciones sin cursor.
+ *
+ * deleteMascotas usa los mismos filtros con otras dos proyecciones: solo los
+ * chips ("Mascota.searchChips.N", por bloques con el cursor) y el número de
+ * filas por tipo ("Mascota.countByTipo.N", un GROUP BY sin cursor ni orden).
+ *
+ * Parámetros de las consultas: :after (cursor), :nombre, :tipo, :sexo.
+ */
+@Component
+public class MascotaSearchQueries {
+
+    private static final Logger logger = LoggerFactory.getLogger(MascotaSearchQueries.class);
+
+    static final int NOMBRE = 1;
+    static final int TIPO = 2;
+    static final int SEXO = 4;
+    static final int CURSOR = 8;
+    static final int VARIANTS = 16;
+
+    private static final String ENTITY_SELECT = "SELECT m";
+
+    private static final String CHIP_SELECT = "SELECT m.numChip";
+
+    private static final String[] NAMES = new String[CURSOR];
+    private static final String[] VIEW_NAMES = new String[VARIANTS];
+    private static final String[] CHIP_NAMES = new String[VARIANTS];
+    private static final String[] COUNT_BY_TIPO_NAMES = new String[CURSOR];
+
+    static {
+        for (int mask = 0; mask < VARIANTS; mask++) {
+            VIEW_NAMES[mask] = "MascotaView.search." + mask;
+            CHIP_NAMES[mask] = "Mascota.searchChips." + mask;
+        }
+        for (int mask = 0; mask < CURSOR; mask++) {
+            NAMES[mask] = "Mascota.search." + mask;
+            COUNT_BY_TIPO_NAMES[mask] = "Mascota.countByTipo." + mask;
+        }
+    }
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void registerQueries() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            for (int mask = 0; mask < VARIANTS; mask++) {
+                entityManagerFactory.addNamedQuery(VIEW_NAMES[mask],
+                        entityManager.createQuery(jpql(MascotaView.JPQL_SELECT, mask), MascotaView.class));
+                entityManagerFactory.addNamedQuery(CHIP_NAMES[mask],
+                        entityManager.createQuery(jpql(CHIP_SELECT, mask), Integer.class));
+            }
+            for (int mask = 0; mask < CURSOR; mask++) {
+                entityManagerFactory.addNamedQuery(NAMES[mask],
+                        entityManager.createQuery(jpql(ENTITY_SELECT, mask), Mascota.class));
+                entityManagerFactory.addNamedQuery(COUNT_BY_TIPO_NAMES[mask],
+                        entityManager.createQuery(countByTipoJpql(mask), Object[].class));
+            }
+        } finally {
+            entityManager.close();
+        }
+        logger.info("Registradas {} consultas precompiladas de búsqueda de mascotas", 2 * VARIANTS + 2 * CURSOR);
+    }
+
+    /**
+     * Nombre de la consulta registrada (con entidades, sin cursor) para los
+     * filtros presentes en el DTO.
+     */
+    public static String queryName(MascotaQueryDto queryDto) {
+        return NAMES[mask(queryDto, false)];
+    }
+
+    /**
+     * Variante que devuelve MascotaView, con o sin cursor.
+     */
+    public static String viewQueryName(MascotaQueryDto queryDto, boolean withCursor) {
+        return VIEW_NAMES[mask(queryDto, withCursor)];
+    }
+
+    /**
+     * Variante que devuelve solo los chips (Integer), en orden de num_chip.
+     */
+    public static String chipQueryName(MascotaQueryDto queryDto, boolean withCursor) {
+        return CHIP_NAMES[mask(queryDto, withCursor)];
+    }
+
+    /**
+     * Variante que devuelve filas (tipoMascota, COUNT) de los filtros del DTO.
+     */
+    public static String countByTipoQueryName(MascotaQueryDto queryDto) {
+        return COUNT_BY_TIPO_NAMES[mask(queryDto, false)];
+    }
+
+    private static int mask(MascotaQueryDto queryDto, boolean withCursor) {
+        int mask = 0;
+        if (queryDto.getNombre() != null) {
+            mask |= NOMBRE;
+        }
+        if (queryDto.getTipoMascota() != null) {
+            mask |= TIPO;
+        }
+        if (queryDto.getSexo() != null) {
+            mask |= SEXO;
+        }
+        if (withCursor) {
+            mask |= CURSOR;
+        }
+        return mask;
+    }
+
+    /**
+     * JPQL de una combinación de filtros con la cláusula SELECT indicada.
+     * Siempre ordena por num_chip: el orden estable es lo que permite paginar
+     * por cursor.
+     */
+    static String jpql(String select, int mask) {
+        return select + " FROM Mascota m" + where(mask) + " ORDER BY m.numChip";
+    }
+
+    static String countByTipoJpql(int mask) {
+        return "SELECT m.tipoMascota, COUNT(m) FROM Mascota m" + where(mask) + " GROUP BY m.tipoMascota";
+    }
+
+    private static String where(int mask) {
+        List<String> conditions = new ArrayList<>();
+        if ((mask & CURSOR) != 0) {
+            conditions.add("m.numChip > :after");
+        }
+        if ((mask & NOMBRE) != 0) {
+            conditions.add("m.nombre = :nombre");
+        }
+        if ((mask & TIPO) != 0) {
+            conditions.add("m.tipoMascota = :tipo");
+        }
+        if ((mask & SEXO) != 0) {
+            conditions.add("m.sexo = :sexo");
+        }
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+}
@@ -0,0 +1,46 @@
+package com.dam.accesodatos.ra3;
+
+import java.util.function.Function;
+
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.springframework.stereotype.Component;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Abre StatelessSession de Hibernate para el modo PersistenceMode.STATELESS.
+ *
+ * La StatelessSession se abre sobre la conexión JDBC de la transacción de
+ * Spring en curso (la misma que usa el EntityManager), así que participa en
+ * ella: un rollback deshace también lo insertado por la StatelessSession.
+ * Al cerrarla no se cierra la conexión, que sigue siendo de la transacción.
+ *
+ * La StatelessSession se abre y se cierra dentro del callback de
+ * doReturningWork(): fuera de él Hibernate puede liberar la conexión
+ * (según el connection handling mode) y sacar el objeto Connection del
+ * callback dejaría la sesión usando una conexión que ya no controla.
+ *
+ * Una StatelessSession no tiene contexto de persistencia: no guarda las
+ * entidades leídas, no hace dirty checking ni usa la caché de segundo nivel,
+ * y cada insert() se ejecuta en el momento.
+ */
+@Component
+public class MascotaStatelessOperations {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public <T> T execute(Function<StatelessSession, T> work) {
+        Session session = entityManager.unwrap(Session.class);
+        return session.doReturningWork(connection -> {
+            try (StatelessSession statelessSession = session.getSessionFactory()
+                    .withStatelessOptions()
+                    .connection(connection)
+                    .openStatelessSession()) {
+                return work.apply(statelessSession);
+            }
+        });
+    }
+}
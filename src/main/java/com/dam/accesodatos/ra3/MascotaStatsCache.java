@@ -0,0 +1,64 @@
+package com.dam.accesodatos.ra3;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.dam.accesodatos.model.MascotaStats;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Caché de corta duración para mascota_stats.
+ *
+ * Un panel que se refresca cada pocos segundos pediría el mismo GROUP BY una
+ * y otra vez. La clave incluye la versión de los datos (MascotaDataVersion):
+ * cualquier escritura confirmada por el servicio cambia la clave y la
+ * siguiente llamada recalcula. El TTL (pawner.stats.cache-ttl-ms) acota
+ * además cuánto tiempo pueden servirse datos viejos si alguien escribe por
+ * fuera del servicio.
+ *
+ * Una transacción con escrituras pendientes no usa la caché: su GROUP BY ve
+ * filas que las demás no ven y que aún pueden deshacerse.
+ */
+@Component
+public class MascotaStatsCache {
+
+    @Value("${pawner.stats.cache-ttl-ms:5000}")
+    private long ttlMillis = 5000;
+
+    @Autowired
+    private MascotaDataVersion dataVersion;
+
+    private Cache<Key, List<MascotaStats>> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .maximumSize(16)
+                .build();
+    }
+
+    /**
+     * Estadísticas de la agrupación indicada: de la caché si están y son de
+     * la versión actual de los datos, o calculadas con loader.
+     */
+    public List<MascotaStats> get(boolean byTipo, boolean bySexo, Supplier<List<MascotaStats>> loader) {
+        if (dataVersion.isChangedInCurrentTransaction()) {
+            return loader.get();
+        }
+        // La versión se lee ANTES de consultar: si hay un commit en medio, el
+        // resultado se guarda con la versión vieja y no se vuelve a servir
+        return cache.get(new Key(byTipo, bySexo, dataVersion.current()), key -> List.copyOf(loader.get()));
+    }
+
+    private record Key(boolean byTipo, boolean bySexo, long version) {
+    }
+}
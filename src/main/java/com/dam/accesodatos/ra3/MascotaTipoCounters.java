@@ -0,0 +1,119 @@
+package com.dam.accesodatos.ra3;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Contadores de mascotas por tipoMascota mantenidos en memoria.
+ *
+ * executeCountByTipo() consulta estos contadores en O(1) en lugar de lanzar
+ * SELECT COUNT(m) ... WHERE m.tipoMascota = :tipo en cada llamada.
+ *
+ * FUNCIONAMIENTO:
+ * - Al arrancar se reconstruyen con un único GROUP BY sobre la tabla, antes
+ *   de que el servidor web acepte peticiones (afterSingletonsInstantiated).
+ * - Los métodos de escritura del servicio llaman a add(tipo, +1/-1).
+ * - Dentro de una transacción los incrementos quedan pendientes y solo se
+ *   aplican si hace commit (ver PendingChanges). Mientras tanto, la propia
+ *   transacción ve sus cambios (count() suma los pendientes).
+ * - ConcurrentHashMap + LongAdder: incrementos sin bloqueos entre hilos.
+ */
+@Component
+public class MascotaTipoCounters implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(MascotaTipoCounters.class);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private volatile ConcurrentHashMap<String, LongAdder> committed = new ConcurrentHashMap<>();
+    private volatile boolean ready = false;
+
+    // tipo -> suma de incrementos de la transacción actual
+    private final PendingChanges<String, Long> pending =
+            new PendingChanges<>(changes -> changes.forEach(this::apply), Long::sum);
+
+    /**
+     * Recalcula todos los contadores desde la BD con un único GROUP BY.
+     *
+     * Sustituye la estructura entera: los commits aplicados entre la consulta
+     * y la sustitución se pierden. Por eso solo se llama al arrancar o sin
+     * escrituras en curso (como los benchmarks tras poblar la tabla).
+     */
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        List<Object[]> rows = entityManager.createQuery(
+                "SELECT m.tipoMascota, COUNT(m) FROM Mascota m GROUP BY m.tipoMascota", Object[].class)
+                .getResultList();
+
+        ConcurrentHashMap<String, LongAdder> fresh = new ConcurrentHashMap<>();
+        for (Object[] row : rows) {
+            LongAdder adder = new LongAdder();
+            adder.add((Long) row[1]);
+            fresh.put((String) row[0], adder);
+        }
+        committed = fresh;
+        ready = true;
+        logger.info("Contadores por tipo reconstruidos: {} tipos", fresh.size());
+    }
+
+    /**
+     * Primera carga, antes de que el servidor web acepte peticiones (ver InitialLoad).
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        InitialLoad.run(transactionManager, this::rebuild);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Número de mascotas del tipo, incluyendo los cambios aún no confirmados
+     * de la transacción actual.
+     */
+    public long count(String tipo) {
+        if (tipo == null) {
+            return 0;
+        }
+        LongAdder adder = committed.get(tipo);
+        long count = adder != null ? adder.sum() : 0;
+        Map<String, Long> changes = pending.current();
+        if (changes != null) {
+            count += changes.getOrDefault(tipo, 0L);
+        }
+        return count;
+    }
+
+    /**
+     * Registra un alta (+1) o baja (-1) de un tipo. Con transacción activa se
+     * aplica en el commit; sin transacción, inmediatamente.
+     */
+    public void add(String tipo, long delta) {
+        if (tipo == null || delta == 0) {
+            return;
+        }
+        pending.record(tipo, delta);
+    }
+
+    private void apply(String tipo, long delta) {
+        committed.computeIfAbsent(tipo, t -> new LongAdder()).add(delta);
+    }
+}
@@ -0,0 +1,124 @@
+package com.dam.accesodatos.ra3;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.hibernate.StaleStateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.persistence.LockTimeoutException;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PessimisticLockException;
+
+/**
+ * Reintento con espera exponencial para las escrituras que chocan con otra.
+ *
+ * Con @Version en Mascota, dos updateMascota simultáneos sobre el mismo chip
+ * ya no se pisan: el segundo commit no encuentra la versión que leyó y falla
+ * con ObjectOptimisticLockingFailureException. La alternativa (bloqueo
+ * pesimista, SELECT ... FOR UPDATE) serializaría a todos los escritores;
+ * aquí solo espera el que pierde, y vuelve a leer y aplicar su cambio en
+ * una transacción nueva.
+ *
+ * Espera entre intentos: aleatoria entre 0 y backoff ("full jitter", para que
+ * los que chocaron no vuelvan a chocar a la vez), con backoff empezando en
+ * initial-backoff-ms y doblándose hasta max-backoff-ms. Tras max-attempts
+ * intentos se relanza el último error.
+ *
+ * Si la llamada llega dentro de una transacción ya abierta no se reintenta:
+ * el conflicto ha marcado esa transacción para rollback y el reintento le
+ * corresponde a quien la abrió.
+ */
+@Component
+public class OptimisticRetry {
+
+    private static final Logger logger = LoggerFactory.getLogger(OptimisticRetry.class);
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    public OptimisticRetry(@Value("${pawner.retry.max-attempts:5}") int maxAttempts,
+                           @Value("${pawner.retry.initial-backoff-ms:5}") long initialBackoffMillis,
+                           @Value("${pawner.retry.max-backoff-ms:200}") long maxBackoffMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = Math.max(1, initialBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.initialBackoffMillis, maxBackoffMillis);
+    }
+
+    /**
+     * Ejecuta work y lo repite mientras falle por un conflicto de concurrencia.
+     */
+    public <T> T call(Supplier<T> work) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return work.get();
+        }
+
+        calls.increment();
+        long backoff = initialBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return work.get();
+            } catch (RuntimeException e) {
+                if (!isConflict(e)) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    logger.warn("Conflicto de concurrencia tras {} intentos: {}", attempt, e.getMessage());
+                    throw e;
+                }
+                retries.increment();
+                sleep(ThreadLocalRandom.current().nextLong(backoff + 1), e);
+                backoff = Math.min(maxBackoffMillis, backoff * 2);
+            }
+        }
+    }
+
+    /**
+     * true si e (o alguna de sus causas) es un conflicto que se resuelve
+     * repitiendo la transacción.
+     */
+    static boolean isConflict(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ConcurrencyFailureException
+                    || t instanceof OptimisticLockException
+                    || t instanceof PessimisticLockException
+                    || t instanceof LockTimeoutException
+                    || t instanceof StaleStateException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void sleep(long millis, RuntimeException conflict) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxAttempts", maxAttempts);
+        stats.put("calls", calls.sum());
+        stats.put("retries", retries.sum());
+        stats.put("exhausted", exhausted.sum());
+        return stats;
+    }
+}
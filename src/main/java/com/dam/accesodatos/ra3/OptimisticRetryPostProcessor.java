@@ -0,0 +1,70 @@
+package com.dam.accesodatos.ra3;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+
+/**
+ * Aplica OptimisticRetry a los métodos @RetryOnConflict de
+ * HibernateMascotaService.
+ *
+ * Igual que DbBulkheadPostProcessor, el interceptor va delante del
+ * TransactionInterceptor del proxy: cada intento abre y confirma su propia
+ * transacción, y el conflicto (que salta en el commit) llega aquí ya
+ * traducido por Spring. Se registra antes que el bulkhead, que queda por
+ * fuera: un reintento conserva el permiso de la llamada.
+ */
+@Component
+public class OptimisticRetryPostProcessor implements BeanPostProcessor, Ordered {
+
+    private final ObjectProvider<OptimisticRetry> retry;
+
+    public OptimisticRetryPostProcessor(ObjectProvider<OptimisticRetry> retry) {
+        this.retry = retry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof HibernateMascotaService)) {
+            return bean;
+        }
+
+        OptimisticRetry optimisticRetry = retry.getObject();
+        MethodInterceptor interceptor = invocation -> {
+            if (!AnnotatedElementUtils.hasAnnotation(invocation.getMethod(), RetryOnConflict.class)) {
+                return invocation.proceed();
+            }
+            return optimisticRetry.call(() -> {
+                try {
+                    // Cada intento recorre de nuevo el resto de la cadena (transacción incluida)
+                    return ((ProxyMethodInvocation) invocation).invocableClone().proceed();
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        };
+
+        if (bean instanceof Advised advised && !advised.isFrozen()) {
+            advised.addAdvice(0, interceptor);
+            return bean;
+        }
+        ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.addInterface(HibernateMascotaService.class);
+        proxyFactory.addAdvice(interceptor);
+        return proxyFactory.getProxy();
+    }
+
+    @Override
+    public int getOrder() {
+        // Antes que DbBulkheadPostProcessor (LOWEST_PRECEDENCE): su addAdvice(0) queda por fuera
+        return Ordered.LOWEST_PRECEDENCE - 1;
+    }
+}
@@ -0,0 +1,94 @@
+package com.dam.accesodatos.ra3;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Cambios de una estructura en memoria (contadores, índices, snapshot)
+ * pendientes de la transacción actual.
+ *
+ * Los métodos de escritura del servicio registran cada cambio con record():
+ * - Con transacción activa se acumula en un mapa ligado a la transacción y
+ *   se aplica con applyOnCommit solo si hace commit (rollback = se descarta).
+ *   Mientras tanto, la propia transacción puede ver sus cambios con current().
+ * - Sin transacción se aplica inmediatamente.
+ *
+ * Un valor null en el mapa significa "borrado" para las estructuras por chip.
+ *
+ * NOTA: las escrituras que no pasan por HibernateMascotaServiceImpl
+ * (MascotaRepository, SQL en la consola H2...) no se reflejan en las
+ * estructuras hasta su siguiente rebuild().
+ */
+final class PendingChanges<K, V> {
+
+    private final Consumer<Map<K, V>> applyOnCommit;
+
+    // null: el último cambio de cada clave sustituye al anterior
+    private final BinaryOperator<V> merge;
+
+    /**
+     * Cada cambio sustituye al anterior de la misma clave.
+     */
+    PendingChanges(Consumer<Map<K, V>> applyOnCommit) {
+        this(applyOnCommit, null);
+    }
+
+    /**
+     * Los cambios de la misma clave se combinan con merge (p. ej. Long::sum).
+     */
+    PendingChanges(Consumer<Map<K, V>> applyOnCommit, BinaryOperator<V> merge) {
+        this.applyOnCommit = applyOnCommit;
+        this.merge = merge;
+    }
+
+    /**
+     * Registra un cambio: pendiente hasta el commit si hay transacción activa,
+     * aplicado ya si no la hay.
+     */
+    void record(K key, V value) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // singletonMap admite null (= borrado), Map.of no
+            applyOnCommit.accept(Collections.singletonMap(key, value));
+            return;
+        }
+        Map<K, V> pending = forTransaction();
+        if (merge != null) {
+            pending.merge(key, value, merge);
+        } else {
+            pending.put(key, value);
+        }
+    }
+
+    /**
+     * Cambios pendientes de la transacción actual, o null si no hay ninguno.
+     */
+    @SuppressWarnings("unchecked")
+    Map<K, V> current() {
+        return (Map<K, V>) TransactionSynchronizationManager.getResource(this);
+    }
+
+    private Map<K, V> forTransaction() {
+        Map<K, V> pending = current();
+        if (pending != null) {
+            return pending;
+        }
+        Map<K, V> created = new HashMap<>();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(PendingChanges.this);
+                if (status == STATUS_COMMITTED) {
+                    applyOnCommit.accept(created);
+                }
+            }
+        });
+        return created;
+    }
+}
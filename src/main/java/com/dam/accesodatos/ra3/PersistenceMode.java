@@ -0,0 +1,35 @@
+package com.dam.accesodatos.ra3;
+
+import java.util.Locale;
+
+/**
+ * Modo de ejecución de las lecturas y de transferData.
+ *
+ * - STATEFUL: Session/EntityManager normal. Las entidades leídas o
+ *   insertadas quedan gestionadas en el contexto de persistencia (caché de
+ *   primer nivel, snapshots, dirty checking, caché de segundo nivel).
+ * - STATELESS: StatelessSession de Hibernate sobre la misma conexión y
+ *   transacción. Sin contexto de persistencia: cada get()/consulta va a la
+ *   BD y devuelve objetos desligados, y cada insert() es un INSERT directo.
+ *   Adecuado para lecturas y cargas de gran volumen.
+ */
+public enum PersistenceMode {
+    STATEFUL,
+    STATELESS;
+
+    /**
+     * Convierte "stateless"/"STATELESS"... en el enum. null o vacío = null
+     * (el servicio usa entonces el modo configurado).
+     */
+    public static PersistenceMode parse(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Modo de persistencia no válido: " + value
+                    + " (valores: stateful, stateless)");
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.dam.accesodatos.ra3;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marca los métodos de HibernateMascotaService que OptimisticRetry repite
+ * cuando fallan por un conflicto de concurrencia (@Version, bloqueo de fila).
+ *
+ * Solo tiene sentido en métodos que se pueden repetir enteros sin efectos
+ * externos: cada intento es una transacción nueva.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RetryOnConflict {
+}
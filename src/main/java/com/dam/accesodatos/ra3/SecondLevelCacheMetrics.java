@@ -0,0 +1,60 @@
+package com.dam.accesodatos.ra3;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Contadores de la caché de segundo nivel de Mascota.
+ *
+ * Caffeine publica por JMX el CacheStatisticsMXBean estándar de JCache
+ * (monitoring.statistics = true en application.conf). Aquí se leen sus
+ * atributos para poder dimensionar la región "mascotas": si hay muchos
+ * desalojos y la tasa de aciertos es baja, maximum.size se queda corto.
+ */
+@Component
+public class SecondLevelCacheMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(SecondLevelCacheMetrics.class);
+
+    public static final String REGION = "mascotas";
+
+    private static final String[] ATTRIBUTES = {
+            "CacheHits", "CacheMisses", "CacheHitPercentage", "CacheGets",
+            "CachePuts", "CacheRemovals", "CacheEvictions"
+    };
+
+    private final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("region", REGION);
+        try {
+            Set<ObjectName> names = mBeanServer.queryNames(
+                    new ObjectName("javax.cache:type=CacheStatistics,Cache=" + REGION + ",*"), null);
+            if (names.isEmpty()) {
+                // La región se crea la primera vez que Hibernate la usa
+                stats.put("available", false);
+                return stats;
+            }
+            ObjectName name = names.iterator().next();
+            for (String attribute : ATTRIBUTES) {
+                stats.put(attribute, mBeanServer.getAttribute(name, attribute));
+            }
+            stats.put("available", true);
+        } catch (JMException e) {
+            logger.warn("No se pudieron leer las estadísticas de la caché {}: {}", REGION, e.getMessage());
+            stats.put("available", false);
+        }
+        return stats;
+    }
+}
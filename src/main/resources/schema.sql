@@ -13,7 +13,8 @@ CREATE TABLE mascotas (
     tipo_mascota VARCHAR(50) NOT NULL,
     edad INT NOT NULL,
     sexo ENUM('macho', 'hembra') NOT NULL,
-    otros_detalles VARCHAR(255)
+    otros_detalles VARCHAR(255),
+    version BIGINT DEFAULT 0 NOT NULL
 );
 
 -- Índices para mejorar rendimiento en búsquedas frecuentes
@@ -28,3 +29,4 @@ COMMENT ON COLUMN mascotas.tipo_mascota IS 'Tipo de mascota (Perro, Gato, Conejo
 COMMENT ON COLUMN mascotas.edad IS 'Edad de la mascota en años';
 COMMENT ON COLUMN mascotas.sexo IS 'Sexo de la mascota (Macho/Hembra)';
 COMMENT ON COLUMN mascotas.otros_detalles IS 'Detalles adicionales (raza, vacunas, observaciones, etc.)';
+COMMENT ON COLUMN mascotas.version IS 'Versión para el bloqueo optimista (@Version), +1 en cada UPDATE';
@@ -2,12 +2,23 @@ package com.dam.accesodatos.ra3;
 
 import com.dam.accesodatos.model.Mascota;
 import com.dam.accesodatos.model.MascotaCreateDto;
+import com.dam.accesodatos.model.MascotaLookup;
+import com.dam.accesodatos.model.MascotaPage;
+import com.dam.accesodatos.model.MascotaPatch;
 import com.dam.accesodatos.model.MascotaQueryDto;
+import com.dam.accesodatos.model.MascotaStats;
 import com.dam.accesodatos.model.MascotaUpdateDto;
+import com.dam.accesodatos.model.MascotaView;
+import com.dam.accesodatos.model.TransferResult;
 import com.dam.accesodatos.repository.MascotaRepository;
+import jakarta.persistence.Cache;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.Query;
 import jakarta.persistence.TypedQuery;
+import org.hibernate.MultiIdentifierLoadAccess;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -18,11 +29,17 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -40,8 +57,19 @@ import static org.mockito.Mockito.*;
  * 5. deleteMascota() - 2 tests
  * 6. findAll() - 1 test
  * 7. findMascotasByTipo() - 2 tests
- * 8. searchMascotas() - 3 tests
- * 9. executeCountByTipo() - 2 tests
+ * 8. searchMascotas() - 6 tests
+ * 9. executeCountByTipo() - 3 tests
+ * 10. searchMascotasPage() - 2 tests
+ * 11. streamMascotas() - 1 test
+ * 12. transferDataBatched() - 2 tests
+ * 13. findMascotaByNumChip(id, STATELESS) - 1 test
+ * 14. searchMascotasByNombre() - 2 tests
+ * 15. fuzzySearchMascotas() - 1 test
+ * 16. analyzeMascotas() / filterMascotas() - 3 tests
+ * 17. mascotaStats() - 2 tests
+ * 18. deleteMascotas() - 2 tests
+ * 19. patchMascota() / patchMascotas() - 2 tests
+ * 20. findMascotasByIds() - 2 tests
  */
 @ExtendWith(MockitoExtension.class)
 @DisplayName("Tests Unitarios - Métodos Implementados")
@@ -53,6 +81,27 @@ class HibernateMascotaServiceImplTest {
     @Mock
     private MascotaRepository mascotaRepository;
 
+    @Mock
+    private MascotaTipoCounters tipoCounters;
+
+    @Mock
+    private MascotaStatelessOperations statelessOperations;
+
+    @Mock
+    private MascotaNombreIndex nombreIndex;
+
+    @Mock
+    private MascotaFuzzyIndex fuzzyIndex;
+
+    @Mock
+    private MascotaColumnarSnapshot columnarSnapshot;
+
+    @Mock
+    private MascotaDataVersion dataVersion;
+
+    @Mock
+    private MascotaStatsCache statsCache;
+
     @InjectMocks
     private HibernateMascotaServiceImpl service;
 
@@ -148,6 +197,10 @@ class HibernateMascotaServiceImplTest {
         assertEquals(createDto.getSexo(), result.getSexo());
         assertEquals(createDto.getOtrosDetalles(), result.getOtrosDetalles());
         verify(entityManager).persist(any(Mascota.class));
+        verify(tipoCounters).add("Gato", 1);
+        verify(columnarSnapshot).put(result);
+        verify(nombreIndex).put(createDto.getNumChip(), createDto.getNombre());
+        verify(dataVersion).markChanged();
         
         System.out.println("✅ Test PASADO: Mascota creada con éxito - " + result.getNombre() + " (ID: " + result.getNumChip() + ")");
     }
@@ -224,6 +277,92 @@ class HibernateMascotaServiceImplTest {
         System.out.println("✅ Test PASADO: Update con ID inexistente (9999) lanza excepción correctamente");
     }
 
+    // ========== Tests para findMascotasByIds() ==========
+
+    @Test
+    @DisplayName("findMascotasByIds() - Orden de entrada y huecos explícitos")
+    void findMascotasByIds_KeepsOrderAndMisses() {
+        // Given - multiLoad devuelve null en la posición del chip que no existe
+        Mascota otra = new Mascota(1003, "Rocky", "Perro", 5, "Macho", null);
+        Session session = mock(Session.class);
+        MultiIdentifierLoadAccess<Mascota> loadAccess = mock(MultiIdentifierLoadAccess.class, RETURNS_SELF);
+        when(entityManager.unwrap(Session.class)).thenReturn(session);
+        when(session.byMultipleIds(Mascota.class)).thenReturn(loadAccess);
+        when(loadAccess.multiLoad(List.of(1003, 9999, 1001))).thenReturn(Arrays.asList(otra, null, testMascota));
+
+        // When
+        MascotaLookup result = service.findMascotasByIds(List.of(1003, 9999, 1001));
+
+        // Then - una sola carga múltiple, comprobando antes contexto y caché
+        assertEquals(Arrays.asList(otra, null, testMascota), result.getMascotas());
+        assertEquals(List.of(9999), result.getMissing());
+        assertEquals(2, result.getFound());
+        verify(loadAccess).enableSessionCheck(true);
+        verify(loadAccess, times(1)).multiLoad(anyList());
+        verify(entityManager, never()).find(eq(Mascota.class), any());
+
+        System.out.println("✅ Test PASADO: Carga múltiple por chips - " + result);
+    }
+
+    @Test
+    @DisplayName("findMascotasByIds() - Lista vacía no consulta la BD")
+    void findMascotasByIds_Empty() {
+        // When
+        MascotaLookup result = service.findMascotasByIds(List.of());
+
+        // Then
+        assertTrue(result.getMascotas().isEmpty());
+        verify(entityManager, never()).unwrap(Session.class);
+
+        System.out.println("✅ Test PASADO: Lista de chips vacía -> resultado vacío sin consultas");
+    }
+
+    // ========== Tests para patchMascota() / patchMascotas() ==========
+
+    @Test
+    @DisplayName("patchMascota() - UPDATE dinámico sin find() previo")
+    void patchMascota_WithoutPreRead() {
+        // Given - la sentencia UPDATE devuelve la fila anterior (OLD TABLE)
+        Session session = mock(Session.class);
+        EntityManagerFactory emf = mock(EntityManagerFactory.class);
+        when(entityManager.unwrap(Session.class)).thenReturn(session);
+        when(session.doReturningWork(any())).thenReturn(
+                new Mascota(1001, "Max", "Perro", 3, "Macho", "Juguetón"));
+        when(entityManager.getEntityManagerFactory()).thenReturn(emf);
+        when(emf.getCache()).thenReturn(mock(Cache.class));
+        MascotaUpdateDto patch = new MascotaUpdateDto(null, "Gato", null, null, null);
+
+        // When
+        Mascota result = service.patchMascota(1001, patch);
+
+        // Then - solo cambia el tipo; el resto viene de la fila anterior
+        assertEquals("Gato", result.getTipoMascota());
+        assertEquals("Max", result.getNombre());
+        verify(entityManager, never()).find(eq(Mascota.class), any());
+        verify(entityManager, never()).merge(any());
+        verify(tipoCounters).add("Perro", -1);
+        verify(tipoCounters).add("Gato", 1);
+        verify(dataVersion).markChanged();
+
+        System.out.println("✅ Test PASADO: Patch del tipo sin leer antes la mascota - " + result);
+    }
+
+    @Test
+    @DisplayName("patchMascotas() - Patch sin campos lanza IllegalArgumentException")
+    void patchMascotas_EmptyPatch() {
+        // Given
+        List<MascotaPatch> patches = List.of(
+                new MascotaPatch(1001, null, "Gato", null, null, null),
+                new MascotaPatch(1002, null, null, null, null, null));
+
+        // When & Then - se valida todo antes de tocar la BD
+        assertThrows(IllegalArgumentException.class, () -> service.patchMascotas(patches));
+        verify(entityManager, never()).unwrap(Session.class);
+        verify(dataVersion, never()).markChanged();
+
+        System.out.println("✅ Test PASADO: patchMascotas rechaza un patch vacío sin ejecutar nada");
+    }
+
     // ========== Tests para deleteMascota() ==========
 
     @Test
@@ -240,6 +379,8 @@ class HibernateMascotaServiceImplTest {
         assertTrue(result);
         verify(entityManager).find(Mascota.class, 1001);
         verify(entityManager).remove(testMascota);
+        verify(nombreIndex).remove(1001);
+        verify(dataVersion).markChanged();
         
         System.out.println("✅ Test PASADO: Mascota eliminada con éxito (ID: 1001)");
     }
@@ -261,6 +402,51 @@ class HibernateMascotaServiceImplTest {
         System.out.println("✅ Test PASADO: Delete con ID inexistente (9999) retorna false correctamente");
     }
 
+    // ========== Tests para deleteMascotas() ==========
+
+    @Test
+    @DisplayName("deleteMascotas() - Un DELETE masivo por bloque de chips, sin cargar entidades")
+    void deleteMascotas_ByChips() {
+        // Given - 9999 no existe: no aparece en la consulta de tipos
+        TypedQuery<Object[]> tiposQuery = mock(TypedQuery.class);
+        when(entityManager.createQuery(anyString(), eq(Object[].class))).thenReturn(tiposQuery);
+        when(tiposQuery.setParameter(anyString(), any())).thenReturn(tiposQuery);
+        when(tiposQuery.getResultList()).thenReturn(List.of(
+                new Object[]{1001, "Perro"},
+                new Object[]{1002, "Gato"}));
+        Query deleteQuery = mock(Query.class);
+        when(entityManager.createQuery(startsWith("DELETE"))).thenReturn(deleteQuery);
+        when(deleteQuery.setParameter(anyString(), any())).thenReturn(deleteQuery);
+        when(deleteQuery.executeUpdate()).thenReturn(2);
+
+        // When
+        int deleted = service.deleteMascotas(List.of(1001, 1002, 9999), null);
+
+        // Then
+        assertEquals(2, deleted);
+        verify(deleteQuery, times(1)).executeUpdate();
+        verify(entityManager, never()).find(eq(Mascota.class), any());
+        verify(entityManager, never()).remove(any());
+        verify(tipoCounters).add("Perro", -1);
+        verify(tipoCounters).add("Gato", -1);
+        verify(columnarSnapshot).remove(1002);
+        verify(dataVersion).markChanged();
+
+        System.out.println("✅ Test PASADO: " + deleted + " mascotas borradas con un solo DELETE ... IN");
+    }
+
+    @Test
+    @DisplayName("deleteMascotas() - Sin chips ni filtro lanza IllegalArgumentException")
+    void deleteMascotas_NoCriteria() {
+        // When & Then - un filtro vacío borraría toda la tabla
+        assertThrows(IllegalArgumentException.class, () -> service.deleteMascotas(List.of(), new MascotaQueryDto()));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.deleteMascotas(List.of(1001), new MascotaQueryDto(null, "Perro", null, null, null)));
+        verify(entityManager, never()).createQuery(anyString());
+
+        System.out.println("✅ Test PASADO: deleteMascotas exige chips o filtro, solo uno de los dos");
+    }
+
     // ========== Tests para findAll() ==========
 
     @Test
@@ -336,7 +522,7 @@ class HibernateMascotaServiceImplTest {
         queryDto.setNombre("Max");
         TypedQuery<Mascota> query = mock(TypedQuery.class);
         List<Mascota> mascotas = Arrays.asList(testMascota);
-        when(entityManager.createQuery(anyString(), eq(Mascota.class))).thenReturn(query);
+        when(entityManager.createNamedQuery(anyString(), eq(Mascota.class))).thenReturn(query);
         when(query.setParameter(anyString(), anyString())).thenReturn(query);
         when(query.getResultList()).thenReturn(mascotas);
 
@@ -345,7 +531,7 @@ class HibernateMascotaServiceImplTest {
 
         assertNotNull(result);
         assertEquals(1, result.size());
-        verify(entityManager).createQuery(anyString(), eq(Mascota.class));
+        verify(entityManager).createNamedQuery(anyString(), eq(Mascota.class));
         verify(query).setParameter("nombre", "Max");
         verify(query).getResultList();
 
@@ -359,7 +545,7 @@ class HibernateMascotaServiceImplTest {
         queryDto.setTipoMascota("Perro");
         TypedQuery<Mascota> query = mock(TypedQuery.class);
         List<Mascota> mascotas = Arrays.asList(testMascota);
-        when(entityManager.createQuery(anyString(), eq(Mascota.class))).thenReturn(query);
+        when(entityManager.createNamedQuery(anyString(), eq(Mascota.class))).thenReturn(query);
         when(query.setParameter(anyString(), anyString())).thenReturn(query);
         when(query.getResultList()).thenReturn(mascotas);
 
@@ -369,7 +555,7 @@ class HibernateMascotaServiceImplTest {
         // Then
         assertNotNull(result);
         assertEquals(1, result.size());
-        verify(entityManager).createQuery(anyString(), eq(Mascota.class));
+        verify(entityManager).createNamedQuery(anyString(), eq(Mascota.class));
         verify(query).setParameter("tipo", "Perro");
         verify(query).getResultList();
         
@@ -383,7 +569,7 @@ class HibernateMascotaServiceImplTest {
         queryDto.setSexo("Macho");
         TypedQuery<Mascota> query = mock(TypedQuery.class);
         List<Mascota> mascotas = Arrays.asList(testMascota);
-        when(entityManager.createQuery(anyString(), eq(Mascota.class))).thenReturn(query);
+        when(entityManager.createNamedQuery(anyString(), eq(Mascota.class))).thenReturn(query);
         when(query.setParameter(anyString(), anyString())).thenReturn(query);
         when(query.getResultList()).thenReturn(mascotas);
 
@@ -393,7 +579,7 @@ class HibernateMascotaServiceImplTest {
         // Then
         assertNotNull(result);
         assertEquals(1, result.size());
-        verify(entityManager).createQuery(anyString(), eq(Mascota.class));
+        verify(entityManager).createNamedQuery(anyString(), eq(Mascota.class));
         verify(query).setParameter("sexo", "Macho");
         verify(query).getResultList();
         
@@ -409,7 +595,7 @@ class HibernateMascotaServiceImplTest {
         queryDto.setSexo("Macho");
         TypedQuery<Mascota> query = mock(TypedQuery.class);
         List<Mascota> mascotas = Arrays.asList(testMascota);
-        when(entityManager.createQuery(anyString(), eq(Mascota.class))).thenReturn(query);
+        when(entityManager.createNamedQuery(anyString(), eq(Mascota.class))).thenReturn(query);
         when(query.setParameter(anyString(), anyString())).thenReturn(query);
         when(query.getResultList()).thenReturn(mascotas);
 
@@ -419,13 +605,378 @@ class HibernateMascotaServiceImplTest {
         // Then
         assertNotNull(result);
         assertEquals(1, result.size());
-        verify(entityManager).createQuery(anyString(), eq(Mascota.class));
+        verify(entityManager).createNamedQuery(anyString(), eq(Mascota.class));
         verify(query, times(3)).setParameter(anyString(), anyString());
         verify(query).getResultList();
         
         System.out.println("✅ Test PASADO: Búsqueda combinada (nombre='Max', tipo='Perro' Y sexo='Macho') - " + result.size() + " resultado(s)");
     }
 
+    @Test
+    @DisplayName("searchMascotas() - Usa la consulta precompilada de la combinación de filtros")
+    void searchMascotas_UsesPrecompiledQuery() {
+        // Given
+        queryDto.setTipoMascota("Perro");
+        queryDto.setSexo("Macho");
+        TypedQuery<Mascota> query = mock(TypedQuery.class);
+        when(entityManager.createNamedQuery(anyString(), eq(Mascota.class))).thenReturn(query);
+        when(query.getResultList()).thenReturn(Arrays.asList(testMascota));
+
+        // When
+        service.searchMascotas(queryDto);
+
+        // Then - tipo + sexo, sin cursor; el JPQL registrado tiene los espacios correctos
+        String expectedName = MascotaSearchQueries.queryName(queryDto);
+        verify(entityManager).createNamedQuery(expectedName, Mascota.class);
+        verify(entityManager, never()).createQuery(anyString(), eq(Mascota.class));
+        assertEquals("SELECT m FROM Mascota m WHERE m.tipoMascota = :tipo AND m.sexo = :sexo ORDER BY m.numChip",
+                MascotaSearchQueries.jpql("SELECT m", MascotaSearchQueries.TIPO | MascotaSearchQueries.SEXO));
+
+        System.out.println("✅ Test PASADO: búsqueda con la consulta precompilada " + expectedName);
+    }
+
+    @Test
+    @DisplayName("searchMascotas() - Solo pagina si se indica limit u offset")
+    void searchMascotas_PagesOnlyWhenRequested() {
+        // Given
+        queryDto.setTipoMascota("Perro");
+        TypedQuery<Mascota> query = mock(TypedQuery.class);
+        when(entityManager.createNamedQuery(anyString(), eq(Mascota.class))).thenReturn(query);
+        when(query.getResultList()).thenReturn(Arrays.asList(testMascota));
+
+        // When - sin limit ni offset
+        service.searchMascotas(queryDto);
+
+        // Then - todas las coincidencias, sin recortar a 10
+        verify(query, never()).setMaxResults(anyInt());
+        verify(query, never()).setFirstResult(anyInt());
+
+        // When - con limit explícito
+        queryDto.setLimit(5);
+        service.searchMascotas(queryDto);
+
+        // Then
+        verify(query).setFirstResult(0);
+        verify(query).setMaxResults(5);
+
+        System.out.println("✅ Test PASADO: searchMascotas solo recorta cuando se pide limit/offset");
+    }
+
+    // ========== Tests para searchMascotasPage() ==========
+
+    @Test
+    @DisplayName("searchMascotasPage() - Devuelve cursor si hay más filas que el límite")
+    void searchMascotasPage_HasMore() {
+        // Given - limit 1 y la consulta devuelve 2 filas (limit + 1)
+        queryDto.setLimit(1);
+        MascotaView max = new MascotaView(1001, "Max", "Perro", 5, "Macho", null, 0L);
+        MascotaView luna = new MascotaView(1002, "Luna", "Gato", 3, "Hembra", null, 0L);
+        TypedQuery<MascotaView> query = mock(TypedQuery.class);
+        when(entityManager.createNamedQuery(anyString(), eq(MascotaView.class))).thenReturn(query);
+        when(query.getResultList()).thenReturn(Arrays.asList(max, luna));
+
+        // When
+        MascotaPage<MascotaView> page = service.searchMascotasPage(queryDto);
+
+        // Then - proyección MascotaView, nunca entidades gestionadas
+        verify(entityManager, never()).createNamedQuery(anyString(), eq(Mascota.class));
+        assertEquals(1, page.getCount());
+        assertTrue(page.isHasMore());
+        assertEquals(1001, MascotaPage.decodeCursor(page.getNextCursor()));
+        verify(query).setMaxResults(2);
+
+        System.out.println("✅ Test PASADO: Página con cursor " + page.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("searchMascotasPage() - Rechaza un cursor no válido")
+    void searchMascotasPage_InvalidCursor() {
+        // Given
+        queryDto.setCursor("no-es-un-cursor");
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> service.searchMascotasPage(queryDto));
+        verify(entityManager, never()).createNamedQuery(anyString(), eq(MascotaView.class));
+
+        System.out.println("✅ Test PASADO: Cursor no válido lanza IllegalArgumentException");
+    }
+
+    // ========== Tests para streamMascotas() ==========
+
+    @Test
+    @DisplayName("streamMascotas() - Entrega cada fila al consumidor sin construir lista")
+    void streamMascotas_Success() {
+        // Given
+        MascotaView max = new MascotaView(1001, "Max", "Perro", 5, "Macho", null, 0L);
+        MascotaView luna = new MascotaView(1002, "Luna", "Gato", 3, "Hembra", null, 0L);
+        TypedQuery<MascotaView> query = mock(TypedQuery.class);
+        when(entityManager.createQuery(anyString(), eq(MascotaView.class))).thenReturn(query);
+        when(query.getResultStream()).thenReturn(Stream.of(max, luna));
+        List<Integer> recibidas = new ArrayList<>();
+
+        // When
+        long count = service.streamMascotas(null, m -> recibidas.add(m.getNumChip()));
+
+        // Then
+        assertEquals(2, count);
+        assertEquals(List.of(1001, 1002), recibidas);
+        verify(query, never()).getResultList();
+        verify(entityManager, never()).clear();
+
+        System.out.println("✅ Test PASADO: " + count + " mascotas recorridas en streaming");
+    }
+
+    // ========== Tests para transferDataBatched() ==========
+
+    @Test
+    @DisplayName("transferDataBatched() - flush/clear por bloques alineados con el batch JDBC")
+    void transferDataBatched_FlushesEveryChunk() {
+        // Given - 45 mascotas y bloques pedidos de 30 (se alinean a 40 con batch_size 20)
+        List<Mascota> mascotas = new ArrayList<>();
+        for (int i = 0; i < 45; i++) {
+            mascotas.add(new Mascota(2000 + i, "Mascota" + i, "Perro", 1, "Macho", null));
+        }
+
+        // When
+        TransferResult result = service.transferDataBatched(mascotas, 30);
+
+        // Then - un bloque de 40 y otro de 5
+        assertEquals(45, result.getRows());
+        assertEquals(40, result.getChunkSize());
+        assertEquals(2, result.getChunks());
+        assertEquals(2, result.getChunkMillis().size());
+        verify(entityManager, times(45)).persist(any(Mascota.class));
+        verify(entityManager, times(2)).flush();
+        verify(entityManager, times(2)).clear();
+
+        System.out.println("✅ Test PASADO: " + result);
+    }
+
+    @Test
+    @DisplayName("transferDataBatched(STATELESS) - INSERT directos con StatelessSession")
+    void transferDataBatched_Stateless() {
+        // Given
+        StatelessSession statelessSession = mock(StatelessSession.class);
+        runWithStatelessSession(statelessSession);
+        List<Mascota> mascotas = new ArrayList<>();
+        for (int i = 0; i < 45; i++) {
+            mascotas.add(new Mascota(2000 + i, "Mascota" + i, "Perro", 1, "Macho", null));
+        }
+
+        // When
+        TransferResult result = service.transferDataBatched(mascotas, 30, PersistenceMode.STATELESS);
+
+        // Then - sin persist() ni clear(): nada pasa por el contexto de persistencia
+        assertEquals(45, result.getRows());
+        assertEquals(2, result.getChunks());
+        verify(statelessSession, times(45)).insert(any(Mascota.class));
+        verify(entityManager, never()).persist(any(Mascota.class));
+        verify(entityManager, never()).clear();
+        verify(tipoCounters, times(45)).add("Perro", 1);
+
+        System.out.println("✅ Test PASADO: " + result + " con StatelessSession");
+    }
+
+    // ========== Tests para findMascotaByNumChip(id, STATELESS) ==========
+
+    @Test
+    @DisplayName("findMascotaByNumChip(STATELESS) - Lee con StatelessSession sin EntityManager.find()")
+    void findMascotaByNumChip_Stateless() {
+        // Given
+        StatelessSession statelessSession = mock(StatelessSession.class);
+        runWithStatelessSession(statelessSession);
+        when(statelessSession.get(Mascota.class, 1001)).thenReturn(testMascota);
+
+        // When
+        Mascota result = service.findMascotaByNumChip(1001, PersistenceMode.STATELESS);
+
+        // Then
+        assertEquals(testMascota, result);
+        verify(entityManager, never()).find(Mascota.class, 1001);
+
+        System.out.println("✅ Test PASADO: Mascota leída sin contexto de persistencia");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runWithStatelessSession(StatelessSession statelessSession) {
+        when(statelessOperations.execute(any())).thenAnswer(invocation ->
+                ((Function<StatelessSession, Object>) invocation.getArgument(0)).apply(statelessSession));
+    }
+
+    // ========== Tests para searchMascotasByNombre() ==========
+
+    @Test
+    @DisplayName("searchMascotasByNombre() - Usa el índice de trigramas y carga proyecciones por clave primaria")
+    @SuppressWarnings("unchecked")
+    void searchMascotasByNombre_FromIndex() {
+        // Given - el índice devuelve 2 chips (ya cortados al limit); el 1002 se borró después (no vuelve)
+        MascotaView max = new MascotaView(1001, "Max", "Perro", 5, "Macho", null, 0L);
+        TypedQuery<MascotaView> query = mock(TypedQuery.class);
+        when(nombreIndex.isReady()).thenReturn(true);
+        when(nombreIndex.search("ma", 10)).thenReturn(List.of(1001, 1002));
+        when(entityManager.createQuery(contains("IN :chips"), eq(MascotaView.class))).thenReturn(query);
+        when(query.setParameter("chips", List.of(1001, 1002))).thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of(max));
+
+        // When
+        List<MascotaView> result = service.searchMascotasByNombre("ma", 10);
+
+        // Then - sin LIKE '%ma%' sobre la tabla ni entidades gestionadas
+        assertEquals(List.of(max), result);
+        verify(entityManager, never()).createQuery(contains("LIKE"), any(Class.class));
+        verify(entityManager, never()).unwrap(Session.class);
+
+        System.out.println("✅ Test PASADO: " + result.size() + " mascota encontrada por nombre con el índice de trigramas");
+    }
+
+    @Test
+    @DisplayName("searchMascotasByNombre() - Usa LIKE si el índice no está listo")
+    @SuppressWarnings("unchecked")
+    void searchMascotasByNombre_IndexNotReady() {
+        // Given
+        MascotaView max = new MascotaView(1001, "Max", "Perro", 5, "Macho", null, 0L);
+        TypedQuery<MascotaView> query = mock(TypedQuery.class, RETURNS_SELF);
+        when(nombreIndex.isReady()).thenReturn(false);
+        when(entityManager.createQuery(contains("LIKE"), eq(MascotaView.class))).thenReturn(query);
+        doReturn(List.of(max)).when(query).getResultList();
+
+        // When
+        List<MascotaView> result = service.searchMascotasByNombre("ma", 10);
+
+        // Then - LIKE cortado en limit filas
+        assertEquals(List.of(max), result);
+        verify(query).setMaxResults(10);
+        verify(nombreIndex, never()).search(anyString(), anyInt());
+
+        System.out.println("✅ Test PASADO: Búsqueda por nombre con LIKE mientras se construye el índice");
+    }
+
+    // ========== Tests para fuzzySearchMascotas() ==========
+
+    @Test
+    @DisplayName("fuzzySearchMascotas() - Devuelve las mascotas en el orden de parecido del índice")
+    void fuzzySearchMascotas_KeepsIndexOrder() {
+        // Given - el índice ordena por distancia: 1002 ("Max") antes que 1001; la BD los devuelve por chip
+        MascotaView maxi = new MascotaView(1001, "Maxi", "Gato", 2, "Hembra", null, 0L);
+        MascotaView max = new MascotaView(1002, "Max", "Perro", 5, "Macho", null, 0L);
+        TypedQuery<MascotaView> query = mock(TypedQuery.class);
+        when(fuzzyIndex.isReady()).thenReturn(true);
+        when(fuzzyIndex.search("Maz", 10)).thenReturn(List.of(1002, 1001));
+        when(entityManager.createQuery(anyString(), eq(MascotaView.class))).thenReturn(query);
+        when(query.setParameter("chips", List.of(1002, 1001))).thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of(maxi, max));
+
+        // When
+        List<MascotaView> result = service.fuzzySearchMascotas("Maz", 10);
+
+        // Then - en el orden de parecido del índice, no en el de la BD
+        assertEquals(List.of(max, maxi), result);
+        verify(entityManager, never()).unwrap(Session.class);
+
+        System.out.println("✅ Test PASADO: Búsqueda aproximada 'Maz' -> " + result.size() + " mascotas ordenadas por parecido");
+    }
+
+    // ========== Tests para analyzeMascotas() ==========
+
+    @Test
+    @DisplayName("analyzeMascotas() - Agrupa en el snapshot columnar sin consultar H2")
+    void analyzeMascotas_FromSnapshot() {
+        // Given
+        MascotaStats perros = new MascotaStats("Perro", "Macho", 3, 2, 9, 5.0);
+        when(columnarSnapshot.isReady()).thenReturn(true);
+        when(columnarSnapshot.stats(queryDto, true, true)).thenReturn(List.of(perros));
+
+        // When
+        List<MascotaStats> result = service.analyzeMascotas(queryDto, "tipoMascota, sexo");
+
+        // Then
+        assertEquals(List.of(perros), result);
+        verify(entityManager, never()).createQuery(anyString(), any(Class.class));
+
+        System.out.println("✅ Test PASADO: Estadísticas desde el snapshot columnar - " + perros);
+    }
+
+    @Test
+    @DisplayName("analyzeMascotas() - Campo de agrupación no válido")
+    void analyzeMascotas_InvalidGroupBy() {
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> service.analyzeMascotas(null, "edad"));
+        verify(columnarSnapshot, never()).stats(any(), anyBoolean(), anyBoolean());
+
+        System.out.println("✅ Test PASADO: groupBy 'edad' lanza IllegalArgumentException");
+    }
+
+    @Test
+    @DisplayName("filterMascotas() - Chips desde el snapshot y proyecciones por clave primaria")
+    @SuppressWarnings("unchecked")
+    void filterMascotas_ChipsFromSnapshot() {
+        // Given - el snapshot devuelve limit + 1 chips; la BD los devuelve desordenados
+        queryDto.setTipoMascota("Perro");
+        queryDto.setLimit(1);
+        MascotaView max = new MascotaView(1001, "Max", "Perro", 5, "Macho", null, 0L);
+        MascotaView rex = new MascotaView(1003, "Rex", "Perro", 2, "Macho", null, 0L);
+        TypedQuery<MascotaView> query = mock(TypedQuery.class);
+        when(columnarSnapshot.isReady()).thenReturn(true);
+        when(columnarSnapshot.filterChips(queryDto, null, 2)).thenReturn(List.of(1001, 1003));
+        when(entityManager.createQuery(anyString(), eq(MascotaView.class))).thenReturn(query);
+        when(query.setParameter("chips", List.of(1001, 1003))).thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of(rex, max));
+
+        // When
+        MascotaPage<MascotaView> page = service.filterMascotas(queryDto);
+
+        // Then - en orden de chip, recortada a limit y con más páginas
+        assertEquals(List.of(max), page.getResult());
+        assertTrue(page.isHasMore());
+        assertEquals(MascotaPage.encodeCursor(1001), page.getNextCursor());
+        verify(entityManager, never()).createNamedQuery(anyString(), any(Class.class));
+
+        System.out.println("✅ Test PASADO: filterMascotas resuelve el filtro en el snapshot - " + page);
+    }
+
+    // ========== Tests para mascotaStats() ==========
+
+    @Test
+    @DisplayName("mascotaStats() - Una sola consulta GROUP BY")
+    void mascotaStats_SingleGroupByQuery() {
+        // Given
+        TypedQuery<Object[]> query = mock(TypedQuery.class);
+        when(entityManager.createQuery(anyString(), eq(Object[].class))).thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of(
+                new Object[]{"Gato", 2L, 1, 4, 2.5},
+                new Object[]{"Perro", 3L, 2, 9, 5.0}));
+
+        // When
+        List<MascotaStats> result = service.mascotaStats("tipoMascota", null);
+
+        // Then
+        assertEquals(2, result.size());
+        assertEquals("Gato", result.get(0).getTipoMascota());
+        assertEquals(2, result.get(0).getCount());
+        assertEquals(9, result.get(1).getMaxEdad());
+        verify(entityManager).createQuery(contains("GROUP BY m.tipoMascota"), eq(Object[].class));
+        verify(statsCache, never()).get(anyBoolean(), anyBoolean(), any());
+
+        System.out.println("✅ Test PASADO: Estadísticas por tipo con una sola consulta - " + result);
+    }
+
+    @Test
+    @DisplayName("mascotaStats() - Con cached=true pasa por MascotaStatsCache")
+    void mascotaStats_Cached() {
+        // Given
+        MascotaStats gatas = new MascotaStats(null, "Hembra", 4, 1, 7, 3.5);
+        when(statsCache.get(eq(false), eq(true), any())).thenReturn(List.of(gatas));
+
+        // When
+        List<MascotaStats> result = service.mascotaStats("sexo", true);
+
+        // Then
+        assertEquals(List.of(gatas), result);
+        verify(entityManager, never()).createQuery(anyString(), any(Class.class));
+
+        System.out.println("✅ Test PASADO: Estadísticas servidas desde la caché - " + gatas);
+    }
+
     // ========== Tests para executeCountByTipo() ==========
 
     @Test
@@ -449,6 +1000,23 @@ class HibernateMascotaServiceImplTest {
         System.out.println("✅ Test PASADO: COUNT de tipo 'Perro' = " + result);
     }
 
+    @Test
+    @DisplayName("executeCountByTipo() - Usa los contadores en memoria si están listos")
+    void executeCountByTipo_FromCounters() {
+        // Given
+        when(tipoCounters.isReady()).thenReturn(true);
+        when(tipoCounters.count("Perro")).thenReturn(7L);
+
+        // When
+        long result = service.executeCountByTipo("Perro");
+
+        // Then - sin consulta JPQL
+        assertEquals(7L, result);
+        verify(entityManager, never()).createQuery(anyString(), eq(Long.class));
+
+        System.out.println("✅ Test PASADO: COUNT de tipo 'Perro' = " + result + " desde contadores en memoria");
+    }
+
     @Test
     @DisplayName("executeCountByTipo() - Retorna 0 si no hay resultados")
     void executeCountByTipo_NoResults() {
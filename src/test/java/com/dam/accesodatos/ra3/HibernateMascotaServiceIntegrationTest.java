@@ -1,7 +1,20 @@
 package com.dam.accesodatos.ra3;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -15,12 +28,23 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.dam.accesodatos.model.ExportResult;
+import com.dam.accesodatos.model.ImportResult;
 import com.dam.accesodatos.model.Mascota;
 import com.dam.accesodatos.model.MascotaCreateDto;
+import com.dam.accesodatos.model.MascotaLookup;
+import com.dam.accesodatos.model.MascotaPage;
+import com.dam.accesodatos.model.MascotaPatch;
+import com.dam.accesodatos.model.MascotaView;
 import com.dam.accesodatos.model.MascotaQueryDto;
+import com.dam.accesodatos.model.MascotaStats;
 import com.dam.accesodatos.model.MascotaUpdateDto;
+import com.dam.accesodatos.model.TransferResult;
 import com.dam.accesodatos.repository.MascotaRepository;
 
 /**
@@ -39,8 +63,23 @@ import com.dam.accesodatos.repository.MascotaRepository;
  *                 3. findAll() - 1 test
  *                 4. findMascotasByTipo() - 2 tests
  *                 5. searchMascotas() - 4 tests
- *                 6. executeCountByTipo() - 2 tests
+ *                 6. executeCountByTipo() - 3 tests
  *                 7. transferData() - 2 tests (transacción y rollback)
+ *                 8. findAllPage() - 1 test (paginación por cursor)
+ *                 9. transferDataBatched() - 2 tests (stateful y stateless)
+ *                 10. upsertMascotas() - 1 test
+ *                 11. MascotaDataVersion - 1 test (no cambia antes del commit)
+ *                 12. searchMascotasByNombre() - 1 test (índice de trigramas)
+ *                 13. fuzzySearchMascotas() - 1 test (BK-tree + clave fonética)
+ *                 14. analyzeMascotas() + filterMascotas() - 2 tests (snapshot columnar)
+ *                 15. mascotaStats() - 1 test (GROUP BY en H2)
+ *                 16. deleteMascotas() - 1 test (por chips y por filtro)
+ *                 17. patchMascota() + patchMascotas() - 1 test (UPDATE sin lectura previa y en batch)
+ *                 18. findMascotasByIds() - 1 test (multiLoad con huecos)
+ *                 19. @Version + OptimisticRetry - 2 tests de estrés (varios hilos, mismo chip; reintento
+ *                 manual y @RetryOnConflict del servicio)
+ *                 20. MascotaImporter.importMascotas() - 1 test (CSV con filas válidas y rechazadas)
+ *                 21. MascotaExporter.exportMascotas() - 2 tests (CSV con gzip y NDJSON; ida y vuelta con import)
  */
 @SpringBootTest
 @ActiveProfiles("test")
@@ -54,6 +93,21 @@ class HibernateMascotaServiceIntegrationTest {
     @Autowired
     private MascotaRepository mascotaRepository;
 
+    @Autowired
+    private MascotaDataVersion dataVersion;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MascotaImporter mascotaImporter;
+
+    @Autowired
+    private MascotaExporter mascotaExporter;
+
+    @Autowired
+    private OptimisticRetry optimisticRetry;
+
     @BeforeEach
     void setUp() {
         // Limpiar BD antes de cada test
@@ -157,6 +211,33 @@ class HibernateMascotaServiceIntegrationTest {
         System.out.println("✅ Test PASADO: Encontradas " + allMascotas.size() + " mascotas en total");
     }
 
+    @Test
+    @DisplayName("findAllPage() - Recorre la tabla por cursor sin repetir filas")
+    void findAllPage_CursorPagination_Success() {
+        // Given
+        createTestMascota(1005, "Coco", "Conejo");
+        createTestMascota(1001, "Max", "Perro");
+        createTestMascota(1003, "Copito", "Conejo");
+        createTestMascota(1002, "Luna", "Gato");
+        createTestMascota(1004, "Rex", "Perro");
+
+        // When - Páginas de 2 elementos
+        MascotaPage<MascotaView> page1 = service.findAllPage(null, 2);
+        MascotaPage<MascotaView> page2 = service.findAllPage(page1.getNextCursor(), 2);
+        MascotaPage<MascotaView> page3 = service.findAllPage(page2.getNextCursor(), 2);
+
+        // Then - Orden por num_chip y la última página sin cursor
+        assertEquals(List.of(1001, 1002), page1.getResult().stream().map(MascotaView::getNumChip).toList());
+        assertTrue(page1.isHasMore());
+        assertEquals(List.of(1003, 1004), page2.getResult().stream().map(MascotaView::getNumChip).toList());
+        assertTrue(page2.isHasMore());
+        assertEquals(List.of(1005), page3.getResult().stream().map(MascotaView::getNumChip).toList());
+        assertFalse(page3.isHasMore());
+        assertNull(page3.getNextCursor());
+
+        System.out.println("✅ Test PASADO: 5 mascotas recorridas en 3 páginas por cursor");
+    }
+
     // ========== Tests de findMascotasByTipo() ==========
 
     @Test
@@ -319,6 +400,29 @@ class HibernateMascotaServiceIntegrationTest {
         System.out.println("✅ Test PASADO: COUNT de tipo 'Perro' = " + count);
     }
 
+    @Test
+    @DisplayName("executeCountByTipo() - Contadores al día tras update, delete y upsert")
+    void executeCountByTipo_TracksWrites() {
+        // Given
+        createTestMascota(1001, "Max", "Perro");
+        createTestMascota(1002, "Rex", "Perro");
+        createTestMascota(1003, "Luna", "Gato");
+
+        // When - Rex pasa a Gato, se borra Max y un upsert convierte a Luna en Conejo
+        MascotaUpdateDto cambioTipo = new MascotaUpdateDto();
+        cambioTipo.setTipoMascota("Gato");
+        service.updateMascota(1002, cambioTipo);
+        service.deleteMascota(1001);
+        service.upsertMascotas(List.of(new Mascota(1003, "Luna", "Conejo", 3, "Hembra", null)));
+
+        // Then
+        assertEquals(0, service.executeCountByTipo("Perro"));
+        assertEquals(1, service.executeCountByTipo("Gato"));
+        assertEquals(1, service.executeCountByTipo("Conejo"));
+
+        System.out.println("✅ Test PASADO: contadores por tipo consistentes tras update, delete y upsert");
+    }
+
     @Test
     @DisplayName("executeCountByTipo() - Retorna 0 si no hay resultados")
     void executeCountByTipo_NoResults() {
@@ -407,6 +511,516 @@ class HibernateMascotaServiceIntegrationTest {
                 "✅ Test PASADO: Rollback funcionó correctamente - BD mantiene solo 1 mascota tras error de duplicado");
     }
 
+    @Test
+    @DisplayName("transferDataBatched() - Inserta por bloques y devuelve estadísticas")
+    void transferDataBatched_Success() {
+        // Given
+        List<Mascota> mascotas = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            mascotas.add(new Mascota(5000 + i, "Mascota" + i, i % 2 == 0 ? "Perro" : "Gato", i % 15, "Hembra", null));
+        }
+
+        // When
+        TransferResult result = service.transferDataBatched(mascotas, 20);
+
+        // Then - bloques de 20: 20 + 20 + 10
+        assertEquals(50, result.getRows());
+        assertEquals(3, result.getChunks());
+        assertEquals(50, mascotaRepository.count());
+        assertNotNull(service.findMascotaByNumChip(5049));
+
+        System.out.println("✅ Test PASADO: " + result + " - tiempos por bloque " + result.getChunkMillis());
+    }
+
+    @Test
+    @DisplayName("transferDataBatched(STATELESS) - Inserta con StatelessSession en la misma transacción")
+    void transferDataBatched_Stateless_Success() {
+        // Given
+        List<Mascota> mascotas = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            mascotas.add(new Mascota(6000 + i, "Mascota" + i, "Conejo", i % 10, "Macho", null));
+        }
+
+        // When
+        TransferResult result = service.transferDataBatched(mascotas, 20, PersistenceMode.STATELESS);
+
+        // Then - las filas se ven desde el EntityManager y desde otra lectura stateless
+        assertEquals(30, result.getRows());
+        assertEquals(30, mascotaRepository.count());
+        assertEquals(30, service.executeCountByTipo("Conejo"));
+        Mascota leida = service.findMascotaByNumChip(6029, PersistenceMode.STATELESS);
+        assertNotNull(leida);
+        assertEquals("Mascota29", leida.getNombre());
+        assertEquals(List.of(6000, 6001), service.findAllPage(null, 2, PersistenceMode.STATELESS)
+                .getResult().stream().map(MascotaView::getNumChip).toList());
+
+        System.out.println("✅ Test PASADO: " + result + " con StatelessSession");
+    }
+
+    @Test
+    @DisplayName("upsertMascotas() - Inserta chips nuevos y actualiza los existentes")
+    void upsertMascotas_InsertsAndUpdates() {
+        // Given - 1001 ya existe
+        createTestMascota(1001, "Max", "Perro");
+
+        Mascota existente = new Mascota(1001, "Maximus", "Perro", 6, "Macho", "Actualizado por MERGE");
+        Mascota nueva = new Mascota(1002, "Luna", "Gato", 3, "Hembra", null);
+
+        // When
+        TransferResult result = service.upsertMascotas(Arrays.asList(existente, nueva));
+
+        // Then - ningún error por chip duplicado, 2 filas en total
+        assertEquals(2, result.getRows());
+        assertEquals(2, mascotaRepository.count());
+        Mascota actualizada = service.findMascotaByNumChip(1001);
+        assertEquals("Maximus", actualizada.getNombre());
+        assertEquals(6, actualizada.getEdad());
+        assertNotNull(service.findMascotaByNumChip(1002));
+
+        System.out.println("✅ Test PASADO: upsert de 2 mascotas (1 actualizada, 1 nueva) con MERGE");
+    }
+
+    @Test
+    @DisplayName("MascotaDataVersion - No cambia hasta el commit de la transacción")
+    void dataVersion_NotBumpedBeforeCommit() {
+        // Given
+        long before = dataVersion.current();
+        String etag = dataVersion.etag("find_all_mascotas", null, 20);
+
+        // When - escrituras dentro de la transacción del test (que acaba en rollback)
+        createTestMascota(1001, "Max", "Perro");
+        service.deleteMascota(1001);
+
+        // Then - ni la versión ni la ETag cambian todavía
+        assertEquals(before, dataVersion.current());
+        assertEquals(etag, dataVersion.etag("find_all_mascotas", null, 20));
+        assertTrue(MascotaDataVersion.matches("W/" + etag, etag));
+        assertFalse(MascotaDataVersion.matches("\"otra\"", etag));
+
+        System.out.println("✅ Test PASADO: La versión de datos solo sube al hacer commit (ETag " + etag + ")");
+    }
+
+    @Test
+    @DisplayName("searchMascotasByNombre() - Busca subcadenas sin distinguir mayúsculas")
+    void searchMascotasByNombre_Substring() {
+        // Given - cambios aún sin commit: el índice los ve como pendientes de esta transacción
+        createTestMascota(1001, "Max", "Perro");
+        createTestMascota(1002, "Maximiliano", "Gato");
+        createTestMascota(1003, "Luna", "Gato");
+
+        // When
+        List<MascotaView> max = service.searchMascotasByNombre("MAX", 10);
+        List<MascotaView> un = service.searchMascotasByNombre("un", 10);
+        List<MascotaView> ninguna = service.searchMascotasByNombre("xyz", 10);
+
+        // Then
+        assertEquals(List.of(1001, 1002), max.stream().map(MascotaView::getNumChip).toList());
+        assertEquals(List.of(1003), un.stream().map(MascotaView::getNumChip).toList());
+        assertTrue(ninguna.isEmpty());
+
+        System.out.println("✅ Test PASADO: Búsqueda por nombre con índice de trigramas ('MAX' -> " + max.size() + " mascotas)");
+    }
+
+    @Test
+    @DisplayName("fuzzySearchMascotas() - Encuentra nombres mal escritos")
+    void fuzzySearchMascotas_Misspelled() {
+        // Given
+        createTestMascota(1001, "Coco", "Perro");
+        createTestMascota(1002, "Michi", "Gato");
+        createTestMascota(1003, "Rocky", "Perro");
+
+        // When
+        List<MascotaView> cocco = service.fuzzySearchMascotas("Cocco", 10);
+        List<MascotaView> michy = service.fuzzySearchMascotas("Michy", 10);
+        List<MascotaView> roki = service.fuzzySearchMascotas("Roki", 1);
+
+        // Then - el más parecido primero
+        assertEquals(1001, cocco.get(0).getNumChip());
+        assertEquals(1002, michy.get(0).getNumChip());
+        assertEquals(List.of(1003), roki.stream().map(MascotaView::getNumChip).toList());
+
+        System.out.println("✅ Test PASADO: 'Cocco' -> " + cocco.get(0).getNombre() + ", 'Michy' -> " + michy.get(0).getNombre());
+    }
+
+    @Test
+    @DisplayName("analyzeMascotas() - Recuento y edades por sexo de un tipo")
+    void analyzeMascotas_GroupBySexo() {
+        // Given - tipo que no está en data.sql: solo cuentan estas tres
+        createTestMascota(3001, "Manuelita", "Tortuga", "Hembra");
+        createTestMascota(3002, "Donatello", "Tortuga", "Macho");
+        createTestMascota(3003, "Leonardo", "Tortuga", "Macho");
+        MascotaQueryDto filter = new MascotaQueryDto(null, "Tortuga", null, null, null);
+
+        // When
+        List<MascotaStats> stats = service.analyzeMascotas(filter, "sexo");
+
+        // Then - ordenado por sexo
+        assertEquals(2, stats.size());
+        assertEquals("Hembra", stats.get(0).getSexo());
+        assertEquals(1, stats.get(0).getCount());
+        assertEquals("Macho", stats.get(1).getSexo());
+        assertEquals(2, stats.get(1).getCount());
+        assertEquals(5.0, stats.get(1).getAvgEdad());
+
+        System.out.println("✅ Test PASADO: Estadísticas por sexo desde el snapshot columnar - " + stats);
+    }
+
+    @Test
+    @DisplayName("filterMascotas() - Filtro en el snapshot columnar y páginas por cursor")
+    void filterMascotas_PagesByCursor() {
+        // Given - cambios aún sin commit: el snapshot los ve como pendientes
+        createTestMascota(3001, "Manuelita", "Tortuga", "Hembra");
+        createTestMascota(3002, "Donatello", "Tortuga", "Macho");
+        createTestMascota(3003, "Leonardo", "Tortuga", "Macho");
+        MascotaQueryDto filter = new MascotaQueryDto(null, "Tortuga", "Macho", 1, null);
+
+        // When
+        MascotaPage<MascotaView> first = service.filterMascotas(filter);
+        filter.setCursor(first.getNextCursor());
+        MascotaPage<MascotaView> second = service.filterMascotas(filter);
+
+        // Then
+        assertEquals(List.of(3002), first.getResult().stream().map(MascotaView::getNumChip).toList());
+        assertTrue(first.isHasMore());
+        assertEquals(List.of(3003), second.getResult().stream().map(MascotaView::getNumChip).toList());
+        assertFalse(second.isHasMore());
+
+        System.out.println("✅ Test PASADO: filterMascotas -> " + first.getResult() + " + " + second.getResult());
+    }
+
+    @Test
+    @DisplayName("mascotaStats() - GROUP BY por tipo y sexo en una consulta")
+    void mascotaStats_GroupByTipoYSexo() {
+        // Given - tipo que no está en data.sql
+        createTestMascota(3101, "Manuelita", "Tortuga", "Hembra");
+        createTestMascota(3102, "Donatello", "Tortuga", "Macho");
+        createTestMascota(3103, "Leonardo", "Tortuga", "Macho");
+
+        // When - cached=true: con escrituras pendientes en esta transacción no se usa la caché
+        List<MascotaStats> stats = service.mascotaStats("tipoMascota,sexo", true);
+
+        // Then
+        List<MascotaStats> tortugas = stats.stream()
+                .filter(s -> "Tortuga".equals(s.getTipoMascota()))
+                .toList();
+        assertEquals(2, tortugas.size());
+        assertEquals("Hembra", tortugas.get(0).getSexo());
+        assertEquals(1, tortugas.get(0).getCount());
+        assertEquals("Macho", tortugas.get(1).getSexo());
+        assertEquals(2, tortugas.get(1).getCount());
+        assertEquals(5, tortugas.get(1).getMinEdad());
+        assertEquals(5.0, tortugas.get(1).getAvgEdad());
+
+        System.out.println("✅ Test PASADO: Estadísticas por tipo y sexo con GROUP BY - " + tortugas);
+    }
+
+    @Test
+    @DisplayName("deleteMascotas() - Borrado masivo por chips y por filtro")
+    void deleteMascotas_ByChipsAndByFilter() {
+        // Given - tipo que no está en data.sql
+        createTestMascota(3201, "Manuelita", "Tortuga", "Hembra");
+        createTestMascota(3202, "Donatello", "Tortuga", "Macho");
+        createTestMascota(3203, "Leonardo", "Tortuga", "Macho");
+        createTestMascota(3204, "Rafael", "Tortuga", "Macho");
+
+        // When - por chips (9999 no existe y no cuenta) y luego por filtro
+        int byChips = service.deleteMascotas(List.of(3201, 9999), null);
+        int byFilter = service.deleteMascotas(null, new MascotaQueryDto(null, "Tortuga", "Macho", null, null));
+
+        // Then - filas, contadores e índices al día
+        assertEquals(1, byChips);
+        assertEquals(3, byFilter);
+        assertNull(service.findMascotaByNumChip(3202));
+        assertEquals(0, service.executeCountByTipo("Tortuga"));
+        assertTrue(service.searchMascotasByNombre("Donatello", 10).isEmpty());
+
+        System.out.println("✅ Test PASADO: Borrado masivo - " + byChips + " por chips, " + byFilter + " por filtro");
+    }
+
+    @Test
+    @DisplayName("patchMascota() + patchMascotas() - Cambios parciales sin lectura previa y en batch")
+    void patchMascotas_FixTipoSpelling() {
+        // Given - tres mascotas con el tipo mal escrito
+        createTestMascota(3301, "Manuelita", "Tortga", "Hembra");
+        createTestMascota(3302, "Donatello", "Tortga", "Macho");
+        createTestMascota(3303, "Leonardo", "Tortga", "Macho");
+
+        // When - un patch suelto y la corrección en bloque (9999 no existe y se ignora)
+        Mascota patched = service.patchMascota(3301, new MascotaUpdateDto(null, null, 7, null, null));
+        TransferResult result = service.patchMascotas(List.of(
+                new MascotaPatch(3301, null, "Tortuga", null, null, null),
+                new MascotaPatch(3302, null, "Tortuga", null, null, null),
+                new MascotaPatch(3303, null, "Tortuga", null, null, null),
+                new MascotaPatch(9999, null, "Tortuga", null, null, null)));
+
+        // Then - el resto de campos no cambia y los contadores siguen al día
+        assertEquals(7, patched.getEdad());
+        assertEquals("Manuelita", patched.getNombre());
+        assertEquals(3, result.getRows());
+        Mascota releida = service.findMascotaByNumChip(3301);
+        assertEquals("Tortuga", releida.getTipoMascota());
+        assertEquals(7, releida.getEdad());
+        assertEquals("Hembra", releida.getSexo());
+        assertEquals(3, service.executeCountByTipo("Tortuga"));
+        assertEquals(0, service.executeCountByTipo("Tortga"));
+
+        System.out.println("✅ Test PASADO: Patch sin lectura previa y corrección del tipo en batch - " + result);
+    }
+
+    @Test
+    @DisplayName("findMascotasByIds() - Varias mascotas por chip en orden de entrada")
+    void findMascotasByIds_InputOrderWithMisses() {
+        // Given
+        createTestMascota(3401, "Manuelita", "Tortuga", "Hembra");
+        createTestMascota(3402, "Donatello", "Tortuga", "Macho");
+
+        // When - 9999 no existe; 3401 se pide dos veces
+        MascotaLookup lookup = service.findMascotasByIds(List.of(3402, 9999, 3401, 3401));
+
+        // Then
+        List<Mascota> mascotas = lookup.getMascotas();
+        assertEquals(4, mascotas.size());
+        assertEquals("Donatello", mascotas.get(0).getNombre());
+        assertNull(mascotas.get(1));
+        assertEquals("Manuelita", mascotas.get(2).getNombre());
+        assertEquals("Manuelita", mascotas.get(3).getNombre());
+        assertEquals(List.of(9999), lookup.getMissing());
+
+        System.out.println("✅ Test PASADO: Carga múltiple en orden de entrada - " + lookup);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("@Version - Sin actualizaciones perdidas con varios hilos sobre el mismo chip")
+    void optimisticLocking_ConcurrentIncrements_NoLostUpdates() throws Exception {
+        // Given - fuera de la transacción del test: cada hilo necesita ver la fila confirmada
+        createTestMascota(3501, "Contador", "Tortuga", "Macho");
+        int threads = 4;
+        int incrementsPerThread = 25;
+        // Más intentos que la política por defecto: los 4 hilos chocan en casi todas las vueltas
+        OptimisticRetry retry = new OptimisticRetry(50, 1, 20);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        try {
+            // When - leer edad y escribir edad + 1 en la misma transacción, con reintento si choca
+            long start = System.nanoTime();
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(pool.submit(() -> {
+                    for (int i = 0; i < incrementsPerThread; i++) {
+                        retry.call(() -> transaction.execute(status -> {
+                            Mascota actual = service.findMascotaByNumChip(3501);
+                            MascotaUpdateDto dto = new MascotaUpdateDto();
+                            dto.setEdad(actual.getEdad() + 1);
+                            return service.updateMascota(3501, dto);
+                        }));
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get(60, TimeUnit.SECONDS);
+            }
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            // Then - ningún incremento perdido: el que choca vuelve a leer y reintenta
+            int updates = threads * incrementsPerThread;
+            int lostUpdates = 5 + updates - service.findMascotaByNumChip(3501).getEdad();
+            assertEquals(0, lostUpdates);
+
+            System.out.printf("✅ Test PASADO: %d updates concurrentes, %.0f updates/s, %d reintentos, "
+                    + "%.1f%% actualizaciones perdidas%n", updates, updates / seconds,
+                    (long) retry.snapshot().get("retries"), 100.0 * lostUpdates / updates);
+        } finally {
+            pool.shutdownNow();
+            service.deleteMascota(3501);
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("@RetryOnConflict - update/patch concurrentes sin transacción exterior se reintentan solos")
+    void retryOnConflict_ConcurrentServiceCalls_AllApplied() throws Exception {
+        // Given - sin transacción exterior: cada llamada abre la suya y el proxy de
+        // @RetryOnConflict (OptimisticRetry con pawner.retry.*) la repite si choca
+        createTestMascota(3502, "Disputada", "Tortuga", "Hembra");
+        long initialVersion = service.findMascotaByNumChip(3502).getVersion();
+        long retriesBefore = (long) optimisticRetry.snapshot().get("retries");
+        long exhaustedBefore = (long) optimisticRetry.snapshot().get("exhausted");
+        int threads = 4;
+        int callsPerThread = 25;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        try {
+            // When - la mitad de los hilos con updateMascota (find + merge) y la otra con patchMascota
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                boolean patch = t % 2 == 1;
+                int thread = t;
+                workers.add(pool.submit(() -> {
+                    for (int i = 0; i < callsPerThread; i++) {
+                        MascotaUpdateDto dto = new MascotaUpdateDto();
+                        dto.setOtrosDetalles("hilo " + thread + ", llamada " + i);
+                        if (patch) {
+                            service.patchMascota(3502, dto);
+                        } else {
+                            service.updateMascota(3502, dto);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get(60, TimeUnit.SECONDS);
+            }
+
+            // Then - cada llamada terminó y subió version exactamente una vez, encima de la anterior
+            int calls = threads * callsPerThread;
+            long retries = (long) optimisticRetry.snapshot().get("retries") - retriesBefore;
+            assertEquals(initialVersion + calls, service.findMascotaByNumChip(3502).getVersion());
+            assertEquals(0, (long) optimisticRetry.snapshot().get("exhausted") - exhaustedBefore);
+            assertTrue(retries > 0, "Con 4 hilos sobre el mismo chip algún updateMascota tiene que chocar");
+
+            System.out.printf("✅ Test PASADO: %d llamadas concurrentes por el servicio, %d reintentos de @RetryOnConflict%n",
+                    calls, retries);
+        } finally {
+            pool.shutdownNow();
+            service.deleteMascota(3502);
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("import_mascotas - Importa las filas válidas de un CSV y rechaza las demás con su línea")
+    void importMascotas_CsvWithBadRows_ImportsValidAndRejectsRest() throws Exception {
+        // Given - cabecera, 5 filas válidas, una con edad negativa y un chip repetido
+        Path dir = Files.createDirectories(Paths.get("build/test-imports"));
+        Path csv = dir.resolve("mascotas-import-test.csv");
+        Files.write(csv, List.of(
+                "num_chip,nombre,tipo_mascota,edad,sexo,otros_detalles",
+                "3601,Iggy,Iguana,2,Macho,",
+                "3602,Verde,Iguana,3,Hembra,\"Come fruta, no insectos\"",
+                "3603,Rex,Iguana,1,Macho,",
+                "3604,Lola,Iguana,4,Hembra,",
+                "3605,Pincho,Iguana,5,Macho,",
+                "3606,Mala,Iguana,-1,Hembra,",
+                "3601,Repetida,Iguana,2,Macho,"));
+        MascotaQueryDto iguanas = new MascotaQueryDto();
+        iguanas.setTipoMascota("Iguana");
+
+        try {
+            // When
+            ImportResult result = mascotaImporter.importMascotas("mascotas-import-test.csv", null);
+
+            // Then - lo válido queda confirmado; cada rechazo indica su línea del fichero
+            assertEquals("csv", result.getFormat());
+            assertEquals(7, result.getRowsRead());
+            assertEquals(5, result.getImported());
+            assertEquals(2, result.getRejected());
+            assertEquals(7, result.getRejections().get(0).getLine());
+            assertEquals(8, result.getRejections().get(1).getLine());
+            assertEquals(5, service.findMascotasByTipo("Iguana").size());
+            assertEquals("Come fruta, no insectos", service.findMascotaByNumChip(3602).getOtrosDetalles());
+            assertEquals("Iggy", service.findMascotaByNumChip(3601).getNombre());
+
+            // Y no se puede leer fuera del directorio de importación
+            assertThrows(IllegalArgumentException.class,
+                    () -> mascotaImporter.importMascotas("../../build.gradle", "csv"));
+
+            System.out.println("✅ Test PASADO: Importación CSV - " + result);
+        } finally {
+            service.deleteMascotas(null, iguanas);
+            Files.deleteIfExists(csv);
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("export_mascotas + import_mascotas - Ida y vuelta con saltos de línea dentro de un campo")
+    void exportThenImport_MultilineField_RoundTrips() throws Exception {
+        // Given - mascotas confirmadas, una con CRLF y LF dentro de otrosDetalles
+        MascotaCreateDto dto = new MascotaCreateDto();
+        dto.setNumChip(3801);
+        dto.setNombre("Multilínea");
+        dto.setTipoMascota("Iguana");
+        dto.setEdad(3);
+        dto.setSexo("Hembra");
+        dto.setOtrosDetalles("Alergia al polen\r\nVacunada, \"sin\" chip\nRevisar");
+        service.createMascota(dto);
+        createTestMascota(3802, "Simple", "Iguana");
+        Path exported = Paths.get("build/test-exports/mascotas-roundtrip.csv");
+        Path toImport = Files.createDirectories(Paths.get("build/test-imports")).resolve("mascotas-roundtrip.csv");
+        Files.deleteIfExists(exported);
+        MascotaQueryDto iguanas = new MascotaQueryDto();
+        iguanas.setTipoMascota("Iguana");
+
+        try {
+            // When - exportar, borrar y volver a importar el mismo fichero
+            mascotaExporter.exportMascotas("mascotas-roundtrip.csv", null, null);
+            Files.copy(exported, toImport, StandardCopyOption.REPLACE_EXISTING);
+            service.deleteMascotas(null, iguanas);
+            ImportResult result = mascotaImporter.importMascotas("mascotas-roundtrip.csv", null);
+
+            // Then - el campo con saltos de línea vuelve intacto y la fila siguiente se numera bien
+            assertEquals(2, result.getImported());
+            assertEquals(0, result.getRejected());
+            assertEquals("Alergia al polen\r\nVacunada, \"sin\" chip\nRevisar",
+                    service.findMascotaByNumChip(3801).getOtrosDetalles());
+            assertEquals("Simple", service.findMascotaByNumChip(3802).getNombre());
+
+            System.out.println("✅ Test PASADO: Export + import con saltos de línea - " + result);
+        } finally {
+            service.deleteMascotas(null, iguanas);
+            Files.deleteIfExists(exported);
+            Files.deleteIfExists(toImport);
+        }
+    }
+
+    @Test
+    @DisplayName("export_mascotas - Escribe la tabla en CSV comprimido con gzip y en NDJSON")
+    void exportMascotas_CsvGzipAndNdjson_WritesAllRows() throws Exception {
+        // Given - un nombre con coma para comprobar las comillas del CSV
+        createTestMascota(3701, "Lenta, pero segura", "Tortuga");
+        createTestMascota(3702, "Flash", "Tortuga");
+        createTestMascota(3703, "Caparazón", "Tortuga");
+        Path csv = Paths.get("build/test-exports/mascotas-export-test.csv.gz");
+        Path ndjson = Paths.get("build/test-exports/mascotas-export-test.ndjson");
+        Files.deleteIfExists(csv);
+        Files.deleteIfExists(ndjson);
+
+        try {
+            // When - formato y compresión deducidos de la extensión
+            ExportResult csvResult = mascotaExporter.exportMascotas("mascotas-export-test.csv.gz", null, null);
+            ExportResult ndjsonResult = mascotaExporter.exportMascotas("mascotas-export-test.ndjson", null, null);
+
+            // Then
+            assertEquals("csv", csvResult.getFormat());
+            assertEquals("gzip", csvResult.getCompression());
+            assertEquals(3, csvResult.getRows());
+            assertEquals(Files.size(csv), csvResult.getBytes());
+            List<String> lines;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(csv)), StandardCharsets.UTF_8))) {
+                lines = reader.lines().toList();
+            }
+            assertEquals(4, lines.size());
+            assertEquals("num_chip,nombre,tipo_mascota,edad,sexo,otros_detalles", lines.get(0));
+            assertEquals("3701,\"Lenta, pero segura\",Tortuga,5,Macho,Test mascota", lines.get(1));
+
+            assertEquals("ndjson", ndjsonResult.getFormat());
+            assertEquals("none", ndjsonResult.getCompression());
+            assertEquals(3, Files.readAllLines(ndjson).size());
+
+            // Y no se sobrescribe un fichero que ya existe
+            assertThrows(IllegalArgumentException.class,
+                    () -> mascotaExporter.exportMascotas("mascotas-export-test.ndjson", null, null));
+
+            System.out.println("✅ Test PASADO: Exportación - " + csvResult + ", " + ndjsonResult);
+        } finally {
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(ndjson);
+        }
+    }
+
     // ========== Tests de casos límite ==========
 
     @Test